@@ -0,0 +1,102 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.service.AsyncSubscriptionService;
+import com.dmdev.service.SubscriptionService;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code callers} concurrent upserts per invocation: through the async service on virtual threads
+ * and through the blocking service on a fixed pool of platform threads, as an HTTP tier would run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncSubscriptionServiceBenchmark {
+
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param({"10000"})
+    private int callers;
+
+    private SubscriptionService subscriptionService;
+    private AsyncSubscriptionService asyncSubscriptionService;
+    private ExecutorService platformThreads;
+    private List<CreateSubscriptionDto> renewals;
+
+    @Setup
+    public void setUp() {
+        var expirationDate = Instant.now().plus(365, ChronoUnit.DAYS);
+        renewals = BenchmarkDatabase.recreate(callers).stream()
+                .map(subscription -> renewalOf(subscription, expirationDate))
+                .toList();
+        subscriptionService = new SubscriptionService(
+                SubscriptionDao.getInstance(),
+                CreateSubscriptionMapper.getInstance(),
+                CreateSubscriptionValidator.getInstance(),
+                Clock.systemUTC());
+        asyncSubscriptionService = new AsyncSubscriptionService(subscriptionService);
+        platformThreads = Executors.newFixedThreadPool(PLATFORM_THREADS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        asyncSubscriptionService.close();
+        platformThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public Object async() {
+        var futures = new CompletableFuture<?>[renewals.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = asyncSubscriptionService.upsert(renewals.get(i));
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    public Object blocking() {
+        var futures = new CompletableFuture<?>[renewals.size()];
+        for (int i = 0; i < futures.length; i++) {
+            var renewal = renewals.get(i);
+            futures[i] = CompletableFuture.supplyAsync(() -> subscriptionService.upsert(renewal), platformThreads);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    private static CreateSubscriptionDto renewalOf(Subscription subscription, Instant expirationDate) {
+        return CreateSubscriptionDto.builder()
+                .userId(subscription.getUserId())
+                .name(subscription.getName())
+                .provider(subscription.getProvider().name())
+                .expirationDate(expirationDate)
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.util.ConnectionManager;
+import lombok.SneakyThrows;
+import lombok.experimental.UtilityClass;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+@UtilityClass
+public class BenchmarkDatabase {
+
+    public static final int SUBSCRIPTIONS_PER_USER = 4;
+
+    private static final String DROP_SQL = "DROP TABLE IF EXISTS subscription";
+    private static final String CREATE_SQL = """
+            CREATE TABLE subscription
+            (
+                id INT AUTO_INCREMENT PRIMARY KEY ,
+                user_id INT NOT NULL ,
+                name VARCHAR(64) NOT NULL ,
+                provider VARCHAR(16) NOT NULL ,
+                expiration_date DATETIME NOT NULL ,
+                status VARCHAR(16) NOT NULL ,
+                UNIQUE (user_id, name)
+            );
+            """;
+
+    /**
+     * Recreates the subscription table with {@code rows} active subscriptions,
+     * {@link #SUBSCRIPTIONS_PER_USER} per user, and returns them with their ids.
+     */
+    @SneakyThrows
+    public static List<Subscription> recreate(int rows) {
+        try (var connection = ConnectionManager.get();
+             var statement = connection.createStatement()) {
+            statement.execute(DROP_SQL);
+            statement.execute(CREATE_SQL);
+        }
+
+        var expirationDate = Instant.now().plus(365, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS);
+        List<Subscription> subscriptions = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            subscriptions.add(Subscription.builder()
+                    .userId(i / SUBSCRIPTIONS_PER_USER)
+                    .name("subscription" + i % SUBSCRIPTIONS_PER_USER)
+                    .provider(i % 2 == 0 ? Provider.GOOGLE : Provider.APPLE)
+                    .expirationDate(expirationDate)
+                    .status(Status.ACTIVE)
+                    .build());
+        }
+        SubscriptionDao.getInstance().insertAll(subscriptions);
+        return subscriptions;
+    }
+}
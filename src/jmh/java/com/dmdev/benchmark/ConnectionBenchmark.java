@@ -0,0 +1,74 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.util.ConnectionManager;
+import com.dmdev.util.PropertiesUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of getting a connection and running a trivial query: through the pool
+ * and by opening a new physical connection per call, as ConnectionManager did before pooling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionBenchmark {
+
+    private Connection keepAlive;
+
+    @Setup
+    public void setUp() throws SQLException {
+        // keeps the in-memory database open between the unpooled connections
+        keepAlive = openPhysical();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        keepAlive.close();
+    }
+
+    @Benchmark
+    public boolean pooled() throws SQLException {
+        try (var connection = ConnectionManager.get()) {
+            return query(connection);
+        }
+    }
+
+    @Benchmark
+    public boolean unpooled() throws SQLException {
+        try (var connection = openPhysical()) {
+            return query(connection);
+        }
+    }
+
+    private static boolean query(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement();
+             var resultSet = statement.executeQuery("SELECT 1")) {
+            return resultSet.next();
+        }
+    }
+
+    private static Connection openPhysical() throws SQLException {
+        return DriverManager.getConnection(
+                PropertiesUtil.get("db.url"),
+                PropertiesUtil.get("db.user"),
+                PropertiesUtil.get("db.password"));
+    }
+}
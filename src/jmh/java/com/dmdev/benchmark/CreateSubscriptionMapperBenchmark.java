@@ -0,0 +1,46 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateSubscriptionMapperBenchmark {
+
+    private final CreateSubscriptionMapper mapper = CreateSubscriptionMapper.getInstance();
+    private CreateSubscriptionDto dto;
+
+    @Setup
+    public void setUp() {
+        dto = CreateSubscriptionDto.builder()
+                .userId(1)
+                .name("subscription1")
+                .provider("GOOGLE")
+                .expirationDate(Instant.now().plus(365, ChronoUnit.DAYS))
+                .build();
+    }
+
+    @Benchmark
+    public Subscription map() {
+        return mapper.map(dto);
+    }
+}
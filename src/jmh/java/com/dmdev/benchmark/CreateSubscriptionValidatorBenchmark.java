@@ -0,0 +1,66 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import com.dmdev.validator.ValidationResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateSubscriptionValidatorBenchmark {
+
+    private final CreateSubscriptionValidator validator = CreateSubscriptionValidator.getInstance();
+    private CreateSubscriptionDto validDto;
+    private CreateSubscriptionDto invalidDto;
+    private List<CreateSubscriptionDto> validBatch;
+
+    @Setup
+    public void setUp() {
+        validDto = CreateSubscriptionDto.builder()
+                .userId(1)
+                .name("subscription1")
+                .provider("GOOGLE")
+                .expirationDate(Instant.now().plus(365, ChronoUnit.DAYS))
+                .build();
+        invalidDto = CreateSubscriptionDto.builder()
+                .name(" ")
+                .provider("AMAZON")
+                .expirationDate(Instant.now().minus(1, ChronoUnit.DAYS))
+                .build();
+        validBatch = Collections.nCopies(100, validDto);
+    }
+
+    @Benchmark
+    public ValidationResult validateValid() {
+        return validator.validate(validDto);
+    }
+
+    @Benchmark
+    public ValidationResult validateInvalid() {
+        return validator.validate(invalidDto);
+    }
+
+    @Benchmark
+    public List<ValidationResult> validateAllValid() {
+        return validator.validateAll(validBatch);
+    }
+}
@@ -0,0 +1,76 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.InMemorySubscriptionDao;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InMemorySubscriptionDaoBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int rows;
+
+    private InMemorySubscriptionDao subscriptionDao;
+    private List<Subscription> subscriptions;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        subscriptionDao = new InMemorySubscriptionDao();
+        subscriptions = new ArrayList<>(rows);
+        var expirationDate = Instant.now().plus(30, ChronoUnit.DAYS);
+        for (int i = 0; i < rows; i++) {
+            subscriptions.add(subscriptionDao.insert(Subscription.builder()
+                    .userId(i / 2)
+                    .name("subscription" + i % 2)
+                    .provider(Provider.APPLE)
+                    .expirationDate(expirationDate)
+                    .status(Status.ACTIVE)
+                    .build()));
+        }
+    }
+
+    @Benchmark
+    public Optional<Subscription> findById() {
+        return subscriptionDao.findById(next().getId());
+    }
+
+    @Benchmark
+    public List<Subscription> findByUserId() {
+        return subscriptionDao.findByUserId(next().getUserId());
+    }
+
+    @Benchmark
+    public Optional<Subscription> upsertByUserIdAndName() {
+        return subscriptionDao.upsertByUserIdAndName(next());
+    }
+
+    private Subscription next() {
+        cursor = (cursor + 1) % subscriptions.size();
+        return subscriptions.get(cursor);
+    }
+}
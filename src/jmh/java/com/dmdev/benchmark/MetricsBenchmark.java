@@ -0,0 +1,49 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.metrics.InMemoryMetricsRegistry;
+import com.dmdev.metrics.NoopMetricsRegistry;
+import com.dmdev.metrics.Timer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead that instrumentation adds to every timed call: recording a measured duration,
+ * and timing a trivial operation with the no-op and the in-memory registry.
+ * Run it with {@code -t <threads>} to see the effect of contention on a shared timer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private final Timer noopTimer = NoopMetricsRegistry.getInstance().timer("benchmark");
+    private final Timer inMemoryTimer = new InMemoryMetricsRegistry().timer("benchmark");
+    private long duration = 12_345;
+
+    @Benchmark
+    public void record() {
+        inMemoryTimer.record(duration++ & 0xFFFFF);
+    }
+
+    @Benchmark
+    public Integer timeNoop() {
+        return noopTimer.time(() -> 42);
+    }
+
+    @Benchmark
+    public Integer timeInMemory() {
+        return inMemoryTimer.time(() -> 42);
+    }
+}
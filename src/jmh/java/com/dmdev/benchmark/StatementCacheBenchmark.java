@@ -0,0 +1,58 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.entity.Subscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * findById with the pool's prepared statement cache and with the cache disabled,
+ * each in its own fork because the pool reads its settings once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StatementCacheBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private final SubscriptionDao subscriptionDao = SubscriptionDao.getInstance();
+    private List<Subscription> subscriptions;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        subscriptions = BenchmarkDatabase.recreate(ROWS);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Ddb.pool.statement-cache-size=50")
+    public Optional<Subscription> findByIdCached() {
+        return subscriptionDao.findById(next().getId());
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Ddb.pool.statement-cache-size=0")
+    public Optional<Subscription> findByIdUncached() {
+        return subscriptionDao.findById(next().getId());
+    }
+
+    private Subscription next() {
+        cursor = (cursor + 1) % subscriptions.size();
+        return subscriptions.get(cursor);
+    }
+}
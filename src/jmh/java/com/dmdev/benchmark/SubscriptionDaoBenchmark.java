@@ -0,0 +1,123 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubscriptionDaoBenchmark {
+
+    private static final int ENTITLEMENT_BATCH_SIZE = 100;
+
+    @Param({"1000", "10000"})
+    private int rows;
+
+    private final SubscriptionDao subscriptionDao = SubscriptionDao.getInstance();
+    private List<Subscription> subscriptions;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        subscriptions = BenchmarkDatabase.recreate(rows);
+    }
+
+    @Benchmark
+    public Optional<Subscription> findById() {
+        return subscriptionDao.findById(next().getId());
+    }
+
+    @Benchmark
+    public List<Subscription> findByUserId() {
+        return subscriptionDao.findByUserId(next().getUserId());
+    }
+
+    @Benchmark
+    public List<Subscription> findAll() {
+        return subscriptionDao.findAll();
+    }
+
+    @Benchmark
+    public long streamAll() {
+        try (var stream = subscriptionDao.streamAll()) {
+            return stream.count();
+        }
+    }
+
+    @Benchmark
+    public BitSet findEntitledUsersOneByOne() {
+        var userIds = nextUserIds();
+        var now = Instant.now();
+        var entitled = new BitSet(userIds.size());
+        for (int i = 0; i < userIds.size(); i++) {
+            for (Subscription subscription : subscriptionDao.findByUserId(userIds.get(i))) {
+                if (subscription.getName().equals("subscription1") && subscription.getProvider() == Provider.APPLE
+                    && subscription.getStatus() == Status.ACTIVE && subscription.getExpirationDate().isAfter(now)) {
+                    entitled.set(i);
+                }
+            }
+        }
+        return entitled;
+    }
+
+    @Benchmark
+    public BitSet findEntitledUsers() {
+        return subscriptionDao.findEntitledUsers(nextUserIds(), "subscription1", Provider.APPLE, Instant.now());
+    }
+
+    @Benchmark
+    public Subscription update() {
+        return subscriptionDao.update(next());
+    }
+
+    @Benchmark
+    public boolean insertAndDelete() {
+        var subscription = subscriptionDao.insert(Subscription.builder()
+                .userId(-1)
+                .name("benchmark")
+                .provider(Provider.GOOGLE)
+                .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS))
+                .status(Status.ACTIVE)
+                .build());
+        return subscriptionDao.delete(subscription.getId());
+    }
+
+    private List<Integer> nextUserIds() {
+        var users = rows / BenchmarkDatabase.SUBSCRIPTIONS_PER_USER;
+        List<Integer> userIds = new ArrayList<>(ENTITLEMENT_BATCH_SIZE);
+        for (int i = 0; i < ENTITLEMENT_BATCH_SIZE; i++) {
+            cursor = (cursor + 1) % users;
+            userIds.add(cursor);
+        }
+        return userIds;
+    }
+
+    private Subscription next() {
+        cursor = (cursor + 1) % subscriptions.size();
+        return subscriptions.get(cursor);
+    }
+}
@@ -0,0 +1,90 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.service.SubscriptionService;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end service operations. cancel and expire are measured together with the upsert that renews
+ * the subscription, so every invocation starts from an active subscription.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubscriptionServiceBenchmark {
+
+    @Param({"1000", "10000"})
+    private int rows;
+
+    private SubscriptionService subscriptionService;
+    private List<Subscription> subscriptions;
+    private Instant expirationDate;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        subscriptions = BenchmarkDatabase.recreate(rows);
+        subscriptionService = new SubscriptionService(
+                SubscriptionDao.getInstance(),
+                CreateSubscriptionMapper.getInstance(),
+                CreateSubscriptionValidator.getInstance(),
+                Clock.systemUTC());
+        expirationDate = Instant.now().plus(365, ChronoUnit.DAYS);
+    }
+
+    @Benchmark
+    public Subscription upsert() {
+        return subscriptionService.upsert(renewalOf(next()));
+    }
+
+    @Benchmark
+    public Subscription cancelAndRenew() {
+        var subscription = next();
+        subscriptionService.cancel(subscription.getId());
+        return subscriptionService.upsert(renewalOf(subscription));
+    }
+
+    @Benchmark
+    public Subscription expireAndRenew() {
+        var subscription = next();
+        subscriptionService.expire(subscription.getId());
+        return subscriptionService.upsert(renewalOf(subscription));
+    }
+
+    private CreateSubscriptionDto renewalOf(Subscription subscription) {
+        return CreateSubscriptionDto.builder()
+                .userId(subscription.getUserId())
+                .name(subscription.getName())
+                .provider(subscription.getProvider().name())
+                .expirationDate(expirationDate)
+                .build();
+    }
+
+    private Subscription next() {
+        cursor = (cursor + 1) % subscriptions.size();
+        return subscriptions.get(cursor);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.InMemorySubscriptionDao;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.snapshot.SubscriptionSnapshotExporter;
+import com.dmdev.snapshot.SubscriptionSnapshotReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks an entitlement through the in-memory dao and through a memory-mapped snapshot of the same rows,
+ * run with {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionSnapshotBenchmark {
+
+    private static final int USERS = 100_000;
+    private static final int SUBSCRIPTIONS_PER_USER = 3;
+
+    private final InMemorySubscriptionDao subscriptionDao = new InMemorySubscriptionDao();
+    private SubscriptionSnapshotReader reader;
+    private Path path;
+    private Instant now;
+    private int cursor;
+
+    @Setup
+    public void setUp() throws IOException {
+        now = Instant.now();
+        for (int userId = 1_000; userId < 1_000 + USERS; userId++) {
+            for (int i = 0; i < SUBSCRIPTIONS_PER_USER; i++) {
+                subscriptionDao.insert(Subscription.builder()
+                        .userId(userId)
+                        .name("subscription" + i)
+                        .provider(Provider.APPLE)
+                        .expirationDate(now.plusSeconds(3600))
+                        .status(Status.ACTIVE)
+                        .build());
+            }
+        }
+        path = Files.createTempFile("subscriptions", ".snapshot");
+        new SubscriptionSnapshotExporter(subscriptionDao).export(path);
+        reader = SubscriptionSnapshotReader.open(path);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public boolean hasActiveInDao() {
+        for (Subscription subscription : subscriptionDao.findByUserId(nextUserId())) {
+            if (subscription.getName().equals("subscription2") && subscription.getProvider() == Provider.APPLE
+                && subscription.getStatus() == Status.ACTIVE && !subscription.getExpirationDate().isBefore(now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean hasActiveInSnapshot() {
+        return reader.hasActive(nextUserId(), "subscription2", Provider.APPLE, now);
+    }
+
+    private int nextUserId() {
+        cursor = (cursor + 7919) % USERS;
+        return 1_000 + cursor;
+    }
+}
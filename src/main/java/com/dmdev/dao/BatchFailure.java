@@ -0,0 +1,10 @@
+package com.dmdev.dao;
+
+import lombok.Value;
+
+@Value(staticConstructor = "of")
+public class BatchFailure<T> {
+    int index;
+    T entity;
+    String message;
+}
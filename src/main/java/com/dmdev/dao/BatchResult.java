@@ -0,0 +1,26 @@
+package com.dmdev.dao;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchResult<T> {
+
+    @Getter
+    private final List<T> succeeded = new ArrayList<>();
+    @Getter
+    private final List<BatchFailure<T>> failures = new ArrayList<>();
+
+    public void addSuccess(T entity) {
+        this.succeeded.add(entity);
+    }
+
+    public void addFailure(BatchFailure<T> failure) {
+        this.failures.add(failure);
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+}
@@ -0,0 +1,458 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Subscription;
+import com.dmdev.util.CacheStats;
+import com.dmdev.util.LruCache;
+import com.dmdev.util.TransactionManager;
+import lombok.Value;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache for by-id and by-user lookups. Every write through this dao invalidates the affected entries.
+ * Cached subscriptions are copied on the way in and out, so callers can not modify the cache contents.
+ * Reads inside a transaction go to the database, they may see changes that are not committed yet.
+ * Writes inside a transaction invalidate once more after the commit, because until then a concurrent reader
+ * outside the transaction still reads the old row and may put it back into the cache.
+ * <p>
+ * Entitlement answers, positive and negative, are cached per user, name and provider with their own,
+ * usually much shorter, time to live. A cached answer ignores the {@code now} of later checks, so a subscription
+ * that expires is still reported as entitled for up to that time to live.
+ */
+public class CachingSubscriptionDao extends ForwardingSubscriptionDao {
+
+    private final LruCache<Integer, Subscription> subscriptionsById;
+    private final LruCache<Integer, List<Subscription>> subscriptionsByUserId;
+    private final LruCache<Entitlement, Boolean> entitlements;
+    private final boolean cacheEntitlements;
+    // bumped on every write, so a read that raced with a write does not put a stale value into the cache;
+    // the check of the version and the put happen under the same lock as the bump and the invalidation
+    private final Object lock = new Object();
+    private long writeVersion;
+
+    public CachingSubscriptionDao(SubscriptionRepository delegate, int maxSize, Duration timeToLive) {
+        this(delegate, maxSize, timeToLive, Duration.ZERO);
+    }
+
+    /**
+     * @param entitlementTimeToLive how long entitlement answers are cached, {@link Duration#ZERO} to not cache them
+     */
+    public CachingSubscriptionDao(SubscriptionRepository delegate, int maxSize, Duration timeToLive, Duration entitlementTimeToLive) {
+        super(delegate);
+        this.subscriptionsById = new LruCache<>(maxSize, timeToLive);
+        this.subscriptionsByUserId = new LruCache<>(maxSize, timeToLive);
+        this.entitlements = new LruCache<>(maxSize, entitlementTimeToLive);
+        this.cacheEntitlements = entitlementTimeToLive.isPositive();
+    }
+
+    @Override
+    public Optional<Subscription> findById(Integer id) {
+        if (TransactionManager.isActive()) {
+            return delegate.findById(id);
+        }
+        var cached = subscriptionsById.get(id);
+        if (cached != null) {
+            return Optional.of(copy(cached));
+        }
+        var version = currentWriteVersion();
+        var subscription = delegate.findById(id);
+        subscription.ifPresent(loaded -> cacheUnlessWritten(version, () -> subscriptionsById.put(id, copy(loaded))));
+        return subscription;
+    }
+
+    @Override
+    public List<Subscription> findByUserId(Integer userId) {
+        if (TransactionManager.isActive()) {
+            return delegate.findByUserId(userId);
+        }
+        var cached = subscriptionsByUserId.get(userId);
+        if (cached != null) {
+            return copy(cached);
+        }
+        var version = currentWriteVersion();
+        var subscriptions = delegate.findByUserId(userId);
+        cacheUnlessWritten(version, () -> subscriptionsByUserId.put(userId, copy(subscriptions)));
+        return subscriptions;
+    }
+
+    /**
+     * Serves cached subscriptions from the cache and loads the rest with one bulk lookup.
+     */
+    @Override
+    public Map<Integer, Subscription> findAllByIds(Collection<Integer> ids) {
+        if (TransactionManager.isActive()) {
+            return delegate.findAllByIds(ids);
+        }
+        Map<Integer, Subscription> subscriptions = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            var cached = id != null ? subscriptionsById.get(id) : null;
+            if (cached != null) {
+                subscriptions.put(id, copy(cached));
+            } else if (id != null) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            var version = currentWriteVersion();
+            var loaded = delegate.findAllByIds(missing);
+            cacheUnlessWritten(version, () -> loaded.forEach((id, subscription) -> subscriptionsById.put(id, copy(subscription))));
+            subscriptions.putAll(loaded);
+        }
+        return subscriptions;
+    }
+
+    /**
+     * Serves cached users from the cache and loads the rest with one bulk lookup.
+     * Users without subscriptions are cached as well, like in {@link #findByUserId}.
+     */
+    @Override
+    public Map<Integer, List<Subscription>> findAllByUserIds(Collection<Integer> userIds) {
+        if (TransactionManager.isActive()) {
+            return delegate.findAllByUserIds(userIds);
+        }
+        Map<Integer, List<Subscription>> subscriptions = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer userId : userIds) {
+            var cached = userId != null ? subscriptionsByUserId.get(userId) : null;
+            if (cached != null) {
+                if (!cached.isEmpty()) {
+                    subscriptions.put(userId, copy(cached));
+                }
+            } else if (userId != null) {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            var version = currentWriteVersion();
+            var loaded = delegate.findAllByUserIds(missing);
+            cacheUnlessWritten(version, () ->
+                    missing.forEach(userId -> subscriptionsByUserId.put(userId, copy(loaded.getOrDefault(userId, List.of())))));
+            subscriptions.putAll(loaded);
+        }
+        return subscriptions;
+    }
+
+    /**
+     * Answers cached users from the cache and checks the rest with one bulk query.
+     */
+    @Override
+    public BitSet findEntitledUsers(List<Integer> userIds, String name, Provider provider, Instant now) {
+        if (!cacheEntitlements || TransactionManager.isActive()) {
+            return delegate.findEntitledUsers(userIds, name, provider, now);
+        }
+        var entitled = new BitSet(userIds.size());
+        List<Integer> missing = new ArrayList<>();
+        var missingIndexes = new int[userIds.size()];
+        for (int i = 0; i < userIds.size(); i++) {
+            var userId = userIds.get(i);
+            var cached = userId != null ? entitlements.get(Entitlement.of(userId, name, provider)) : null;
+            if (cached != null) {
+                entitled.set(i, cached);
+            } else if (userId != null) {
+                missingIndexes[missing.size()] = i;
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            var version = currentWriteVersion();
+            var loaded = delegate.findEntitledUsers(missing, name, provider, now);
+            for (int i = 0; i < missing.size(); i++) {
+                entitled.set(missingIndexes[i], loaded.get(i));
+            }
+            cacheUnlessWritten(version, () -> {
+                for (int i = 0; i < missing.size(); i++) {
+                    entitlements.put(Entitlement.of(missing.get(i), name, provider), loaded.get(i));
+                }
+            });
+        }
+        return entitled;
+    }
+
+    @Override
+    public Subscription insert(Subscription entity) {
+        try {
+            return delegate.insert(entity);
+        } finally {
+            invalidate(entity);
+        }
+    }
+
+    @Override
+    public Subscription update(Subscription entity) {
+        var ids = Collections.singletonList(entity.getId());
+        var affected = findAffected(ids);
+        try {
+            return delegate.update(entity);
+        } finally {
+            invalidate(ids, affected);
+            invalidate(entity);
+        }
+    }
+
+    @Override
+    public Subscription upsert(Subscription entity) {
+        return entity.getId() != null
+                ? update(entity)
+                : insert(entity);
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        var ids = Collections.singletonList(id);
+        var affected = findAffected(ids);
+        try {
+            return delegate.delete(id);
+        } finally {
+            invalidate(ids, affected);
+        }
+    }
+
+    @Override
+    public Optional<Subscription> upsertByUserIdAndName(Subscription entity) {
+        try {
+            var subscription = delegate.upsertByUserIdAndName(entity);
+            subscription.ifPresent(stored -> invalidateNowAndAfterCommit(() -> subscriptionsById.invalidate(stored.getId())));
+            return subscription;
+        } finally {
+            invalidate(entity);
+        }
+    }
+
+    @Override
+    public BatchResult<Subscription> upsertAllByUserIdAndName(List<Subscription> entities) {
+        try {
+            var result = delegate.upsertAllByUserIdAndName(entities);
+            var ids = result.getSucceeded().stream()
+                    .map(Subscription::getId)
+                    .toList();
+            invalidateNowAndAfterCommit(() -> ids.forEach(subscriptionsById::invalidate));
+            return result;
+        } finally {
+            entities.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public boolean cancel(Integer id) {
+        var ids = Collections.singletonList(id);
+        var affected = findAffected(ids);
+        try {
+            return delegate.cancel(id);
+        } finally {
+            invalidate(ids, affected);
+        }
+    }
+
+    @Override
+    public boolean expire(Integer id, Instant expirationDate) {
+        var ids = Collections.singletonList(id);
+        var affected = findAffected(ids);
+        try {
+            return delegate.expire(id, expirationDate);
+        } finally {
+            invalidate(ids, affected);
+        }
+    }
+
+    @Override
+    public List<Integer> expireOverdue(Instant now, int limit) {
+        var ids = delegate.expireOverdue(now, limit);
+        // expiring keeps the user, name and provider, so the rows can be looked up after the write
+        invalidate(ids, findAffected(ids));
+        return ids;
+    }
+
+    @Override
+    public int[] applyAll(List<SubscriptionMutation> mutations) {
+        List<Integer> ids = new ArrayList<>();
+        List<Subscription> upserts = new ArrayList<>();
+        for (SubscriptionMutation mutation : mutations) {
+            if (mutation.getKind() == SubscriptionMutation.Kind.UPSERT) {
+                upserts.add(mutation.getSubscription());
+            } else {
+                ids.add(mutation.getId());
+            }
+        }
+        var affected = findAffected(ids);
+        try {
+            return delegate.applyAll(mutations);
+        } finally {
+            // applied upserts carry the ids of their rows, and their users are invalidated below
+            upserts.forEach(upsert -> ids.add(upsert.getId()));
+            invalidate(ids, affected);
+            upserts.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public BatchResult<Subscription> insertAll(Collection<Subscription> entities) {
+        try {
+            return delegate.insertAll(entities);
+        } finally {
+            entities.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public BatchResult<Subscription> updateAll(Collection<Subscription> entities) {
+        var ids = idsOf(entities);
+        var affected = findAffected(ids);
+        try {
+            return delegate.updateAll(entities);
+        } finally {
+            invalidate(ids, affected);
+            entities.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public BatchResult<Subscription> upsertAll(Collection<Subscription> entities) {
+        var ids = idsOf(entities);
+        var affected = findAffected(ids);
+        try {
+            return delegate.upsertAll(entities);
+        } finally {
+            invalidate(ids, affected);
+            entities.forEach(this::invalidate);
+        }
+    }
+
+    public CacheStats getByIdStats() {
+        return subscriptionsById.stats();
+    }
+
+    public CacheStats getByUserIdStats() {
+        return subscriptionsByUserId.stats();
+    }
+
+    public CacheStats getEntitlementStats() {
+        return entitlements.stats();
+    }
+
+    public void invalidateAll() {
+        synchronized (lock) {
+            writeVersion++;
+            subscriptionsById.invalidateAll();
+            subscriptionsByUserId.invalidateAll();
+            entitlements.invalidateAll();
+        }
+    }
+
+    private void invalidate(Subscription entity) {
+        // the caller may still modify the entity before the commit
+        var userId = entity.getUserId();
+        var entitlement = Entitlement.from(entity);
+        invalidateNowAndAfterCommit(() -> {
+            subscriptionsByUserId.invalidate(userId);
+            entitlements.invalidate(entitlement);
+        });
+    }
+
+    /**
+     * Invalidates the subscriptions with these ids and the users and entitlements of the affected rows.
+     */
+    private void invalidate(Collection<Integer> ids, List<Subscription> affected) {
+        var affectedIds = ids.stream()
+                .filter(Objects::nonNull)
+                .toList();
+        invalidateNowAndAfterCommit(() -> {
+            affectedIds.forEach(subscriptionsById::invalidate);
+            for (Subscription subscription : affected) {
+                subscriptionsByUserId.invalidate(subscription.getUserId());
+                entitlements.invalidate(Entitlement.from(subscription));
+            }
+        });
+    }
+
+    /**
+     * A write by id does not tell whose subscription it changes, so the rows are taken from the cache
+     * or looked up with one bulk query, to invalidate only their users and entitlements.
+     */
+    private List<Subscription> findAffected(Collection<Integer> ids) {
+        List<Subscription> affected = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            var cached = id != null ? subscriptionsById.peek(id) : null;
+            if (cached != null) {
+                affected.add(copy(cached));
+            } else if (id != null) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            affected.addAll(delegate.findAllByIds(missing).values());
+        }
+        return affected;
+    }
+
+    private static List<Integer> idsOf(Collection<Subscription> entities) {
+        return entities.stream()
+                .map(Subscription::getId)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * The invalidation bumps the write version and drops entries under the lock,
+     * so a read that loaded the old row in between can not put it back.
+     */
+    private void invalidateNowAndAfterCommit(Runnable invalidation) {
+        Runnable versioned = () -> {
+            synchronized (lock) {
+                writeVersion++;
+                invalidation.run();
+            }
+        };
+        versioned.run();
+        if (TransactionManager.isActive()) {
+            TransactionManager.afterCommit(versioned);
+        }
+    }
+
+    private long currentWriteVersion() {
+        synchronized (lock) {
+            return writeVersion;
+        }
+    }
+
+    private void cacheUnlessWritten(long version, Runnable put) {
+        synchronized (lock) {
+            if (version == writeVersion) {
+                put.run();
+            }
+        }
+    }
+
+    private static Subscription copy(Subscription subscription) {
+        return subscription.toBuilder().build();
+    }
+
+    private static List<Subscription> copy(List<Subscription> subscriptions) {
+        return subscriptions.stream()
+                .map(CachingSubscriptionDao::copy)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Value(staticConstructor = "of")
+    private static class Entitlement {
+        Integer userId;
+        String name;
+        Provider provider;
+
+        private static Entitlement from(Subscription subscription) {
+            return of(subscription.getUserId(), subscription.getName(), subscription.getProvider());
+        }
+    }
+}
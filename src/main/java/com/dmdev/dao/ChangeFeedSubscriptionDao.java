@@ -0,0 +1,150 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Subscription;
+import com.dmdev.feed.SubscriptionChange.Kind;
+import com.dmdev.feed.SubscriptionChangeFeed;
+import com.dmdev.util.TransactionManager;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Publishes every successful write to a {@link SubscriptionChangeFeed} once it is committed: right away
+ * outside a transaction, after the commit inside {@link TransactionManager#inTransaction}.
+ * Writes that changed nothing, like canceling a subscription that is not active, publish nothing.
+ * <p>
+ * Publishing does not touch the log file, so it does not fail a write that has already committed.
+ * Changes are sequenced in publish order: writes of different threads may commit in one order and be
+ * published in the other, and a process that dies between a commit and its publish loses that change.
+ */
+public class ChangeFeedSubscriptionDao extends ForwardingSubscriptionDao {
+
+    private final SubscriptionChangeFeed changeFeed;
+
+    public ChangeFeedSubscriptionDao(SubscriptionRepository delegate, SubscriptionChangeFeed changeFeed) {
+        super(delegate);
+        this.changeFeed = changeFeed;
+    }
+
+    @Override
+    public Subscription insert(Subscription entity) {
+        var subscription = delegate.insert(entity);
+        publish(Kind.INSERTED, subscription.getId(), subscription);
+        return subscription;
+    }
+
+    @Override
+    public Subscription update(Subscription entity) {
+        var subscription = delegate.update(entity);
+        publish(Kind.UPDATED, subscription.getId(), subscription);
+        return subscription;
+    }
+
+    @Override
+    public Subscription upsert(Subscription entity) {
+        return entity.getId() != null
+                ? update(entity)
+                : insert(entity);
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        var deleted = delegate.delete(id);
+        if (deleted) {
+            publish(Kind.DELETED, id, null);
+        }
+        return deleted;
+    }
+
+    @Override
+    public Optional<Subscription> upsertByUserIdAndName(Subscription entity) {
+        var subscription = delegate.upsertByUserIdAndName(entity);
+        subscription.ifPresent(stored -> publish(Kind.UPSERTED, stored.getId(), stored));
+        return subscription;
+    }
+
+    @Override
+    public BatchResult<Subscription> upsertAllByUserIdAndName(List<Subscription> entities) {
+        return publishSucceeded(Kind.UPSERTED, delegate.upsertAllByUserIdAndName(entities));
+    }
+
+    @Override
+    public boolean cancel(Integer id) {
+        var canceled = delegate.cancel(id);
+        if (canceled) {
+            publish(Kind.CANCELED, id, null);
+        }
+        return canceled;
+    }
+
+    @Override
+    public boolean expire(Integer id, Instant expirationDate) {
+        var expired = delegate.expire(id, expirationDate);
+        if (expired) {
+            publish(Kind.EXPIRED, id, null);
+        }
+        return expired;
+    }
+
+    @Override
+    public List<Integer> expireOverdue(Instant now, int limit) {
+        var ids = delegate.expireOverdue(now, limit);
+        ids.forEach(id -> publish(Kind.EXPIRED, id, null));
+        return ids;
+    }
+
+    @Override
+    public int[] applyAll(List<SubscriptionMutation> mutations) {
+        var updateCounts = delegate.applyAll(mutations);
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == 0) {
+                continue;
+            }
+            var mutation = mutations.get(i);
+            switch (mutation.getKind()) {
+                case UPSERT -> {
+                    // an upsert only updates the expiration date and status, so with its id it is the stored row
+                    var upserted = mutation.getSubscription();
+                    if (upserted.getId() != null) {
+                        publish(Kind.UPSERTED, upserted.getId(), upserted.toBuilder().build());
+                    }
+                }
+                case CANCEL -> publish(Kind.CANCELED, mutation.getId(), null);
+                case EXPIRE -> publish(Kind.EXPIRED, mutation.getId(), null);
+            }
+        }
+        return updateCounts;
+    }
+
+    @Override
+    public BatchResult<Subscription> insertAll(Collection<Subscription> entities) {
+        return publishSucceeded(Kind.INSERTED, delegate.insertAll(entities));
+    }
+
+    @Override
+    public BatchResult<Subscription> updateAll(Collection<Subscription> entities) {
+        return publishSucceeded(Kind.UPDATED, delegate.updateAll(entities));
+    }
+
+    @Override
+    public BatchResult<Subscription> upsertAll(Collection<Subscription> entities) {
+        return publishSucceeded(Kind.UPSERTED, delegate.upsertAll(entities));
+    }
+
+    private BatchResult<Subscription> publishSucceeded(Kind kind, BatchResult<Subscription> result) {
+        result.getSucceeded().forEach(subscription -> publish(kind, subscription.getId(), subscription));
+        return result;
+    }
+
+    private void publish(Kind kind, Integer id, Subscription subscription) {
+        if (TransactionManager.isActive()) {
+            // the caller may still modify the entity before the commit
+            var written = subscription != null ? subscription.toBuilder().build() : null;
+            TransactionManager.afterCommit(() -> changeFeed.publish(kind, id, written));
+        } else {
+            changeFeed.publish(kind, id, subscription);
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.dmdev.dao;
 
 import com.dmdev.entity.BaseEntity;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.UnaryOperator;
 
 public interface Dao<K, T extends BaseEntity<K>> {
 
@@ -22,4 +24,30 @@ public interface Dao<K, T extends BaseEntity<K>> {
     T update(T entity);
 
     T insert(T entity);
+
+    default BatchResult<T> insertAll(Collection<T> entities) {
+        return applyToEach(entities, this::insert);
+    }
+
+    default BatchResult<T> updateAll(Collection<T> entities) {
+        return applyToEach(entities, this::update);
+    }
+
+    default BatchResult<T> upsertAll(Collection<T> entities) {
+        return applyToEach(entities, this::upsert);
+    }
+
+    private BatchResult<T> applyToEach(Collection<T> entities, UnaryOperator<T> operation) {
+        var result = new BatchResult<T>();
+        var index = 0;
+        for (T entity : entities) {
+            try {
+                result.addSuccess(operation.apply(entity));
+            } catch (Exception e) {
+                result.addFailure(BatchFailure.of(index, entity, e.getMessage()));
+            }
+            index++;
+        }
+        return result;
+    }
 }
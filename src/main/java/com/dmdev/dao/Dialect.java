@@ -0,0 +1,50 @@
+package com.dmdev.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+public enum Dialect {
+    POSTGRESQL, H2;
+
+    // timestamps are stored without time zone, in the local time of the application (see Timestamp.from)
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    public static Dialect fromUrl(String url) {
+        if (url.startsWith("jdbc:postgresql:")) {
+            return POSTGRESQL;
+        }
+        if (url.startsWith("jdbc:h2:")) {
+            return H2;
+        }
+        throw new IllegalArgumentException("Unsupported database url " + url);
+    }
+
+    /**
+     * Wraps an INSERT/UPDATE/DELETE so that executing it as a query returns the given columns of the changed rows.
+     */
+    public String returning(String dml, String columns) {
+        return switch (this) {
+            case POSTGRESQL -> dml + " RETURNING " + columns;
+            case H2 -> "SELECT " + columns + " FROM FINAL TABLE (" + dml + ")";
+        };
+    }
+
+    /**
+     * Reads a timestamp column through the cheapest conversion of the driver:
+     * pgjdbc parses {@link LocalDateTime} directly but goes through a {@code Calendar} for {@code Timestamp},
+     * H2 creates the {@code Timestamp} straight from its internal value.
+     */
+    public Instant getInstant(ResultSet resultSet, int column) throws SQLException {
+        return switch (this) {
+            case POSTGRESQL -> {
+                var localDateTime = resultSet.getObject(column, LocalDateTime.class);
+                var offset = ZONE.getRules().getOffset(localDateTime);
+                yield Instant.ofEpochSecond(localDateTime.toEpochSecond(offset), localDateTime.getNano());
+            }
+            case H2 -> resultSet.getTimestamp(column).toInstant();
+        };
+    }
+}
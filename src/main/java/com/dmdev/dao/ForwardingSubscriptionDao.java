@@ -0,0 +1,145 @@
+package com.dmdev.dao;
+
+import com.dmdev.dto.SubscriptionFilter;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Subscription;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Base class for {@link SubscriptionRepository} decorators: every operation is passed to the delegate,
+ * subclasses override only what they add behaviour to.
+ */
+@RequiredArgsConstructor
+public abstract class ForwardingSubscriptionDao implements SubscriptionRepository {
+
+    protected final SubscriptionRepository delegate;
+
+    @Override
+    public List<Subscription> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Stream<Subscription> streamAll() {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public void forEach(Consumer<Subscription> action) {
+        delegate.forEach(action);
+    }
+
+    @Override
+    public Optional<Subscription> findById(Integer id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        return delegate.delete(id);
+    }
+
+    @Override
+    public Subscription update(Subscription entity) {
+        return delegate.update(entity);
+    }
+
+    @Override
+    public Subscription insert(Subscription entity) {
+        return delegate.insert(entity);
+    }
+
+    @Override
+    public Subscription upsert(Subscription entity) {
+        return delegate.upsert(entity);
+    }
+
+    @Override
+    public List<Subscription> findByUserId(Integer userId) {
+        return delegate.findByUserId(userId);
+    }
+
+    @Override
+    public Map<Integer, Subscription> findAllByIds(Collection<Integer> ids) {
+        return delegate.findAllByIds(ids);
+    }
+
+    @Override
+    public Map<Integer, List<Subscription>> findAllByUserIds(Collection<Integer> userIds) {
+        return delegate.findAllByUserIds(userIds);
+    }
+
+    @Override
+    public BitSet findEntitledUsers(List<Integer> userIds, String name, Provider provider, Instant now) {
+        return delegate.findEntitledUsers(userIds, name, provider, now);
+    }
+
+    @Override
+    public List<Subscription> findPage(Integer afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public List<Subscription> findByUserId(Integer userId, Integer afterId, int limit) {
+        return delegate.findByUserId(userId, afterId, limit);
+    }
+
+    @Override
+    public List<Subscription> findPage(SubscriptionFilter filter, Integer afterId, int limit) {
+        return delegate.findPage(filter, afterId, limit);
+    }
+
+    @Override
+    public Optional<Subscription> upsertByUserIdAndName(Subscription entity) {
+        return delegate.upsertByUserIdAndName(entity);
+    }
+
+    @Override
+    public BatchResult<Subscription> upsertAllByUserIdAndName(List<Subscription> entities) {
+        return delegate.upsertAllByUserIdAndName(entities);
+    }
+
+    @Override
+    public boolean cancel(Integer id) {
+        return delegate.cancel(id);
+    }
+
+    @Override
+    public boolean expire(Integer id, Instant expirationDate) {
+        return delegate.expire(id, expirationDate);
+    }
+
+    @Override
+    public List<Integer> expireOverdue(Instant now, int limit) {
+        return delegate.expireOverdue(now, limit);
+    }
+
+    @Override
+    public int[] applyAll(List<SubscriptionMutation> mutations) {
+        return delegate.applyAll(mutations);
+    }
+
+    @Override
+    public BatchResult<Subscription> insertAll(Collection<Subscription> entities) {
+        return delegate.insertAll(entities);
+    }
+
+    @Override
+    public BatchResult<Subscription> updateAll(Collection<Subscription> entities) {
+        return delegate.updateAll(entities);
+    }
+
+    @Override
+    public BatchResult<Subscription> upsertAll(Collection<Subscription> entities) {
+        return delegate.upsertAll(entities);
+    }
+}
@@ -0,0 +1,580 @@
+package com.dmdev.dao;
+
+import com.dmdev.dto.SubscriptionFilter;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import lombok.SneakyThrows;
+import lombok.Value;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link SubscriptionRepository} that keeps the subscriptions in memory, with the same results and constraints
+ * as the table: ids come from a sequence, (user_id, name) is unique and every column is required.
+ * A violated constraint is reported with a {@link SQLIntegrityConstraintViolationException}.
+ * <p>
+ * Rows are indexed by id, user id, (user id, name) and, while active, expiration date. Reads do not lock. Writes lock one of
+ * {@value #STRIPES} stripes chosen by user id, so writes of different users rarely wait for each other.
+ * {@link #applyAll} holds every stripe and undoes its changes if a mutation fails.
+ * Stored subscriptions are copied on the way in and out, so callers can not modify them.
+ */
+public class InMemorySubscriptionDao implements SubscriptionRepository {
+
+    private static final int STRIPES = 64;
+    private static final int MAX_NAME_LENGTH = 64;
+
+    private final ConcurrentSkipListMap<Integer, Subscription> rows = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Set<Integer>> idsByUserId = new ConcurrentHashMap<>();
+    private final Map<UserName, Integer> idsByUserIdAndName = new ConcurrentHashMap<>();
+    private final NavigableSet<ExpirationKey> activeIdsByExpirationDate = new ConcurrentSkipListSet<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public InMemorySubscriptionDao() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public List<Subscription> findAll() {
+        return rows.values().stream()
+                .map(InMemorySubscriptionDao::copy)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Streams a weakly consistent view in id order: rows changed while streaming may or may not be seen.
+     */
+    @Override
+    public Stream<Subscription> streamAll() {
+        return rows.values().stream()
+                .map(InMemorySubscriptionDao::copy);
+    }
+
+    @Override
+    public Optional<Subscription> findById(Integer id) {
+        var subscription = id != null ? rows.get(id) : null;
+        return subscription != null
+                ? Optional.of(copy(subscription))
+                : Optional.empty();
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        if (id == null) {
+            return false;
+        }
+        var previous = lockRow(id);
+        if (previous == null) {
+            return false;
+        }
+        try {
+            store(previous, null);
+            return true;
+        } finally {
+            unlock(previous.getUserId());
+        }
+    }
+
+    @Override
+    public Subscription update(Subscription entity) {
+        replace(entity);
+        return entity;
+    }
+
+    @Override
+    public Subscription insert(Subscription entity) {
+        checkColumns(entity);
+        lock(entity.getUserId());
+        try {
+            checkUnique(entity, null);
+            entity.setId(sequence.incrementAndGet());
+            store(null, copy(entity));
+            return entity;
+        } finally {
+            unlock(entity.getUserId());
+        }
+    }
+
+    @Override
+    public List<Subscription> findByUserId(Integer userId) {
+        List<Subscription> subscriptions = new ArrayList<>();
+        collectByUserId(userId, subscription -> true, subscriptions);
+        return subscriptions;
+    }
+
+    @Override
+    public Map<Integer, Subscription> findAllByIds(Collection<Integer> ids) {
+        Map<Integer, Subscription> subscriptions = new HashMap<>();
+        for (Integer id : ids) {
+            var subscription = id != null ? rows.get(id) : null;
+            if (subscription != null) {
+                subscriptions.put(id, copy(subscription));
+            }
+        }
+        return subscriptions;
+    }
+
+    @Override
+    public Map<Integer, List<Subscription>> findAllByUserIds(Collection<Integer> userIds) {
+        Map<Integer, List<Subscription>> subscriptions = new HashMap<>();
+        for (Integer userId : userIds) {
+            if (userId == null || subscriptions.containsKey(userId)) {
+                continue;
+            }
+            List<Subscription> userSubscriptions = new ArrayList<>();
+            collectByUserId(userId, subscription -> true, userSubscriptions);
+            if (!userSubscriptions.isEmpty()) {
+                subscriptions.put(userId, userSubscriptions);
+            }
+        }
+        return subscriptions;
+    }
+
+    @Override
+    public BitSet findEntitledUsers(List<Integer> userIds, String name, Provider provider, Instant now) {
+        var entitled = new BitSet(userIds.size());
+        for (int i = 0; i < userIds.size(); i++) {
+            var key = userIds.get(i) != null ? UserName.of(userIds.get(i), name) : null;
+            var id = key != null ? idsByUserIdAndName.get(key) : null;
+            var subscription = id != null ? rows.get(id) : null;
+            // the index may be a step behind the rows while a write is in progress
+            if (subscription != null
+                && key.equals(UserName.from(subscription))
+                && subscription.getProvider() == provider
+                && subscription.getStatus() == Status.ACTIVE
+                && subscription.getExpirationDate().isAfter(now)) {
+                entitled.set(i);
+            }
+        }
+        return entitled;
+    }
+
+    @Override
+    public List<Subscription> findPage(SubscriptionFilter filter, Integer afterId, int limit) {
+        checkLimit(limit);
+        Predicate<Subscription> matches = subscription -> matches(filter, subscription)
+                && (afterId == null || subscription.getId() > afterId);
+        if (filter.getUserId() != null) {
+            List<Subscription> subscriptions = new ArrayList<>();
+            collectByUserId(filter.getUserId(), matches, subscriptions);
+            return subscriptions.size() > limit
+                    ? new ArrayList<>(subscriptions.subList(0, limit))
+                    : subscriptions;
+        }
+        var candidates = afterId == null ? rows.values() : rows.tailMap(afterId, false).values();
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (Subscription subscription : candidates) {
+            if (subscriptions.size() == limit) {
+                break;
+            }
+            if (matches.test(subscription)) {
+                subscriptions.add(copy(subscription));
+            }
+        }
+        return subscriptions;
+    }
+
+    @Override
+    public Optional<Subscription> upsertByUserIdAndName(Subscription entity) {
+        checkColumns(entity);
+        lock(entity.getUserId());
+        try {
+            var id = idsByUserIdAndName.get(UserName.from(entity));
+            if (id == null) {
+                var stored = copy(entity).setId(sequence.incrementAndGet());
+                store(null, stored);
+                return Optional.of(copy(stored));
+            }
+            var previous = rows.get(id);
+            if (previous.getProvider() != entity.getProvider()) {
+                return Optional.empty();
+            }
+            var stored = copy(previous)
+                    .setExpirationDate(entity.getExpirationDate())
+                    .setStatus(entity.getStatus());
+            store(previous, stored);
+            return Optional.of(copy(stored));
+        } finally {
+            unlock(entity.getUserId());
+        }
+    }
+
+    @Override
+    public boolean cancel(Integer id) {
+        return changeStatus(id, subscription -> subscription.getStatus() == Status.ACTIVE,
+                subscription -> subscription.setStatus(Status.CANCELED));
+    }
+
+    @Override
+    public boolean expire(Integer id, Instant expirationDate) {
+        Objects.requireNonNull(expirationDate, "expirationDate");
+        return changeStatus(id, subscription -> subscription.getStatus() != Status.EXPIRED,
+                subscription -> subscription.setStatus(Status.EXPIRED).setExpirationDate(expirationDate));
+    }
+
+    @Override
+    public List<Integer> expireOverdue(Instant now, int limit) {
+        checkLimit(limit);
+        List<Integer> expiredIds = new ArrayList<>();
+        // only active rows are indexed, so the head set holds just the overdue candidates, longest overdue first
+        for (var key : activeIdsByExpirationDate.headSet(ExpirationKey.of(now, Integer.MIN_VALUE))) {
+            if (expiredIds.size() == limit) {
+                break;
+            }
+            var id = key.getId();
+            var expired = changeStatus(id,
+                    subscription -> subscription.getStatus() == Status.ACTIVE && subscription.getExpirationDate().isBefore(now),
+                    subscription -> subscription.setStatus(Status.EXPIRED));
+            if (expired) {
+                expiredIds.add(id);
+            }
+        }
+        return expiredIds;
+    }
+
+    @Override
+    public int[] applyAll(List<SubscriptionMutation> mutations) {
+        var updateCounts = new int[mutations.size()];
+        var upsertedIds = new Integer[mutations.size()];
+        // the rows touched so far as they were before, null for rows created here
+        Map<Integer, Subscription> previousRows = new LinkedHashMap<>();
+        lockAll();
+        try {
+            for (int i = 0; i < mutations.size(); i++) {
+                updateCounts[i] = apply(mutations.get(i), previousRows, upsertedIds, i);
+            }
+            for (int i = 0; i < mutations.size(); i++) {
+                if (mutations.get(i).getKind() == SubscriptionMutation.Kind.UPSERT) {
+                    mutations.get(i).getSubscription().setId(upsertedIds[i]);
+                }
+            }
+            return updateCounts;
+        } catch (Throwable e) {
+            // constraint violations are sneaky-thrown SQLExceptions, so catch everything
+            previousRows.forEach((id, previous) -> store(rows.get(id), previous));
+            throw e;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public BatchResult<Subscription> insertAll(Collection<Subscription> entities) {
+        return applyToEach(entities, entity -> {
+            insert(entity);
+            return true;
+        });
+    }
+
+    @Override
+    public BatchResult<Subscription> updateAll(Collection<Subscription> entities) {
+        return applyToEach(entities, this::replace);
+    }
+
+    @Override
+    public BatchResult<Subscription> upsertAll(Collection<Subscription> entities) {
+        return applyToEach(entities, entity -> {
+            if (entity.getId() != null) {
+                return replace(entity);
+            }
+            insert(entity);
+            return true;
+        });
+    }
+
+    /**
+     * @return {@code false} if there is no subscription with the entity's id
+     */
+    private boolean replace(Subscription entity) {
+        checkColumns(entity);
+        if (entity.getId() == null) {
+            return false;
+        }
+        while (true) {
+            var previous = rows.get(entity.getId());
+            if (previous == null) {
+                return false;
+            }
+            lock(previous.getUserId(), entity.getUserId());
+            try {
+                if (rows.get(entity.getId()) != previous) {
+                    continue;
+                }
+                checkUnique(entity, entity.getId());
+                store(previous, copy(entity));
+                return true;
+            } finally {
+                unlock(previous.getUserId(), entity.getUserId());
+            }
+        }
+    }
+
+    private boolean changeStatus(Integer id, Predicate<Subscription> condition, Consumer<Subscription> change) {
+        if (id == null) {
+            return false;
+        }
+        var previous = lockRow(id);
+        if (previous == null) {
+            return false;
+        }
+        try {
+            if (!condition.test(previous)) {
+                return false;
+            }
+            var next = copy(previous);
+            change.accept(next);
+            store(previous, next);
+            return true;
+        } finally {
+            unlock(previous.getUserId());
+        }
+    }
+
+    private int apply(SubscriptionMutation mutation,
+                      Map<Integer, Subscription> previousRows,
+                      Integer[] upsertedIds,
+                      int index) {
+        return switch (mutation.getKind()) {
+            case UPSERT -> {
+                var entity = mutation.getSubscription();
+                var existingId = idsByUserIdAndName.get(UserName.from(entity));
+                if (existingId != null) {
+                    remember(previousRows, existingId);
+                }
+                var stored = upsertByUserIdAndName(entity);
+                if (existingId == null) {
+                    stored.ifPresent(subscription -> previousRows.putIfAbsent(subscription.getId(), null));
+                }
+                upsertedIds[index] = stored.map(Subscription::getId).orElse(null);
+                yield stored.isPresent() ? 1 : 0;
+            }
+            case CANCEL -> {
+                remember(previousRows, mutation.getId());
+                yield cancel(mutation.getId()) ? 1 : 0;
+            }
+            case EXPIRE -> {
+                remember(previousRows, mutation.getId());
+                yield expire(mutation.getId(), mutation.getExpirationDate()) ? 1 : 0;
+            }
+        };
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+    }
+
+    private void remember(Map<Integer, Subscription> previousRows, Integer id) {
+        if (id != null && !previousRows.containsKey(id)) {
+            previousRows.put(id, rows.get(id));
+        }
+    }
+
+    private BatchResult<Subscription> applyToEach(Collection<Subscription> entities, Predicate<Subscription> operation) {
+        var result = new BatchResult<Subscription>();
+        var index = 0;
+        for (Subscription entity : entities) {
+            try {
+                if (operation.test(entity)) {
+                    result.addSuccess(entity);
+                } else {
+                    result.addFailure(BatchFailure.of(index, entity,
+                            String.format("Subscription %d does not exist", entity.getId())));
+                }
+            } catch (Exception e) {
+                result.addFailure(BatchFailure.of(index, entity, e.getMessage()));
+            }
+            index++;
+        }
+        return result;
+    }
+
+    private void collectByUserId(Integer userId, Predicate<Subscription> filter, List<Subscription> subscriptions) {
+        var ids = userId != null ? idsByUserId.get(userId) : null;
+        if (ids == null) {
+            return;
+        }
+        var from = subscriptions.size();
+        for (Integer id : ids) {
+            var subscription = rows.get(id);
+            // the index may be a step behind the rows while a write is in progress
+            if (subscription != null && userId.equals(subscription.getUserId()) && filter.test(subscription)) {
+                subscriptions.add(copy(subscription));
+            }
+        }
+        subscriptions.subList(from, subscriptions.size()).sort(Comparator.comparing(Subscription::getId));
+    }
+
+    private boolean matches(SubscriptionFilter filter, Subscription subscription) {
+        return (filter.getUserId() == null || filter.getUserId().equals(subscription.getUserId()))
+                && (filter.getStatus() == null || filter.getStatus() == subscription.getStatus())
+                && (filter.getProvider() == null || filter.getProvider() == subscription.getProvider())
+                && (filter.getExpirationFrom() == null || !subscription.getExpirationDate().isBefore(filter.getExpirationFrom()))
+                && (filter.getExpirationTo() == null || subscription.getExpirationDate().isBefore(filter.getExpirationTo()));
+    }
+
+    /**
+     * Moves the indexes from {@code previous} to {@code next}, either of them may be {@code null}.
+     * The caller holds the stripes of both user ids.
+     */
+    private void store(Subscription previous, Subscription next) {
+        if (previous != null) {
+            idsByUserIdAndName.remove(UserName.from(previous), previous.getId());
+            activeIdsByExpirationDate.remove(ExpirationKey.from(previous));
+            var userIds = idsByUserId.get(previous.getUserId());
+            userIds.remove(previous.getId());
+            if (userIds.isEmpty()) {
+                idsByUserId.remove(previous.getUserId());
+            }
+            if (next == null) {
+                rows.remove(previous.getId());
+            }
+        }
+        if (next != null) {
+            rows.put(next.getId(), next);
+            idsByUserIdAndName.put(UserName.from(next), next.getId());
+            if (next.getStatus() == Status.ACTIVE) {
+                activeIdsByExpirationDate.add(ExpirationKey.from(next));
+            }
+            idsByUserId.computeIfAbsent(next.getUserId(), userId -> ConcurrentHashMap.newKeySet()).add(next.getId());
+        }
+    }
+
+    @SneakyThrows
+    private void checkColumns(Subscription entity) {
+        if (entity.getUserId() == null || entity.getName() == null || entity.getProvider() == null
+                || entity.getExpirationDate() == null || entity.getStatus() == null) {
+            throw new SQLIntegrityConstraintViolationException("Subscription columns can not be null: " + entity);
+        }
+        if (entity.getName().length() > MAX_NAME_LENGTH) {
+            throw new SQLIntegrityConstraintViolationException(
+                    String.format("Subscription name is longer than %d characters: %s", MAX_NAME_LENGTH, entity.getName()));
+        }
+    }
+
+    @SneakyThrows
+    private void checkUnique(Subscription entity, Integer ownId) {
+        var existingId = idsByUserIdAndName.get(UserName.from(entity));
+        if (existingId != null && !existingId.equals(ownId)) {
+            throw new SQLIntegrityConstraintViolationException(String.format(
+                    "User %d already has subscription %s", entity.getUserId(), entity.getName()));
+        }
+    }
+
+    /**
+     * Locks the stripe of the subscription's current owner.
+     *
+     * @return the locked row, or {@code null} without a lock if there is no subscription with this id
+     */
+    private Subscription lockRow(Integer id) {
+        while (true) {
+            var subscription = rows.get(id);
+            if (subscription == null) {
+                return null;
+            }
+            lock(subscription.getUserId());
+            if (rows.get(id) == subscription) {
+                return subscription;
+            }
+            unlock(subscription.getUserId());
+        }
+    }
+
+    private void lock(Integer userId) {
+        stripes[stripeOf(userId)].lock();
+    }
+
+    private void unlock(Integer userId) {
+        stripes[stripeOf(userId)].unlock();
+    }
+
+    private void lock(Integer firstUserId, Integer secondUserId) {
+        var first = stripeOf(firstUserId);
+        var second = stripeOf(secondUserId);
+        stripes[Math.min(first, second)].lock();
+        if (first != second) {
+            stripes[Math.max(first, second)].lock();
+        }
+    }
+
+    private void unlock(Integer firstUserId, Integer secondUserId) {
+        var first = stripeOf(firstUserId);
+        var second = stripeOf(secondUserId);
+        stripes[first].unlock();
+        if (first != second) {
+            stripes[second].unlock();
+        }
+    }
+
+    private void lockAll() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    private static int stripeOf(Integer userId) {
+        return Math.floorMod(userId, STRIPES);
+    }
+
+    private static Subscription copy(Subscription subscription) {
+        return subscription.toBuilder().build();
+    }
+
+    @Value(staticConstructor = "of")
+    private static class UserName {
+        Integer userId;
+        String name;
+
+        private static UserName from(Subscription subscription) {
+            return of(subscription.getUserId(), subscription.getName());
+        }
+    }
+
+    @Value(staticConstructor = "of")
+    private static class ExpirationKey implements Comparable<ExpirationKey> {
+        Instant expirationDate;
+        Integer id;
+
+        private static ExpirationKey from(Subscription subscription) {
+            return of(subscription.getExpirationDate(), subscription.getId());
+        }
+
+        @Override
+        public int compareTo(ExpirationKey other) {
+            var byDate = expirationDate.compareTo(other.expirationDate);
+            return byDate != 0 ? byDate : id.compareTo(other.id);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.dmdev.dao;
+
+import com.dmdev.dto.SubscriptionFilter;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Subscription;
+import com.dmdev.metrics.MetricsRegistry;
+import com.dmdev.metrics.Timer;
+
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Records latency and errors of every dao operation in timers named {@code dao.<method>}.
+ * {@code streamAll} is timed until the stream is returned, {@code forEach} until the last row is processed.
+ */
+public class InstrumentedSubscriptionDao extends ForwardingSubscriptionDao {
+
+    private final Timer findAllTimer;
+    private final Timer streamAllTimer;
+    private final Timer forEachTimer;
+    private final Timer findByIdTimer;
+    private final Timer deleteTimer;
+    private final Timer updateTimer;
+    private final Timer insertTimer;
+    private final Timer upsertTimer;
+    private final Timer findByUserIdTimer;
+    private final Timer findAllByIdsTimer;
+    private final Timer findAllByUserIdsTimer;
+    private final Timer findEntitledUsersTimer;
+    private final Timer findPageTimer;
+    private final Timer findByUserIdPageTimer;
+    private final Timer upsertByUserIdAndNameTimer;
+    private final Timer upsertAllByUserIdAndNameTimer;
+    private final Timer cancelTimer;
+    private final Timer expireTimer;
+    private final Timer expireOverdueTimer;
+    private final Timer applyAllTimer;
+    private final Timer insertAllTimer;
+    private final Timer updateAllTimer;
+    private final Timer upsertAllTimer;
+
+    public InstrumentedSubscriptionDao(SubscriptionRepository delegate, MetricsRegistry metricsRegistry) {
+        super(delegate);
+        this.findAllTimer = metricsRegistry.timer("dao.findAll");
+        this.streamAllTimer = metricsRegistry.timer("dao.streamAll");
+        this.forEachTimer = metricsRegistry.timer("dao.forEach");
+        this.findByIdTimer = metricsRegistry.timer("dao.findById");
+        this.deleteTimer = metricsRegistry.timer("dao.delete");
+        this.updateTimer = metricsRegistry.timer("dao.update");
+        this.insertTimer = metricsRegistry.timer("dao.insert");
+        this.upsertTimer = metricsRegistry.timer("dao.upsert");
+        this.findByUserIdTimer = metricsRegistry.timer("dao.findByUserId");
+        this.findAllByIdsTimer = metricsRegistry.timer("dao.findAllByIds");
+        this.findAllByUserIdsTimer = metricsRegistry.timer("dao.findAllByUserIds");
+        this.findEntitledUsersTimer = metricsRegistry.timer("dao.findEntitledUsers");
+        this.findPageTimer = metricsRegistry.timer("dao.findPage");
+        this.findByUserIdPageTimer = metricsRegistry.timer("dao.findByUserIdPage");
+        this.upsertByUserIdAndNameTimer = metricsRegistry.timer("dao.upsertByUserIdAndName");
+        this.upsertAllByUserIdAndNameTimer = metricsRegistry.timer("dao.upsertAllByUserIdAndName");
+        this.cancelTimer = metricsRegistry.timer("dao.cancel");
+        this.expireTimer = metricsRegistry.timer("dao.expire");
+        this.expireOverdueTimer = metricsRegistry.timer("dao.expireOverdue");
+        this.applyAllTimer = metricsRegistry.timer("dao.applyAll");
+        this.insertAllTimer = metricsRegistry.timer("dao.insertAll");
+        this.updateAllTimer = metricsRegistry.timer("dao.updateAll");
+        this.upsertAllTimer = metricsRegistry.timer("dao.upsertAll");
+    }
+
+    @Override
+    public List<Subscription> findAll() {
+        return findAllTimer.time(delegate::findAll);
+    }
+
+    @Override
+    public Stream<Subscription> streamAll() {
+        return streamAllTimer.time(delegate::streamAll);
+    }
+
+    @Override
+    public void forEach(Consumer<Subscription> action) {
+        forEachTimer.time(() -> {
+            delegate.forEach(action);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<Subscription> findById(Integer id) {
+        return findByIdTimer.time(() -> delegate.findById(id));
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        return deleteTimer.time(() -> delegate.delete(id));
+    }
+
+    @Override
+    public Subscription update(Subscription entity) {
+        return updateTimer.time(() -> delegate.update(entity));
+    }
+
+    @Override
+    public Subscription insert(Subscription entity) {
+        return insertTimer.time(() -> delegate.insert(entity));
+    }
+
+    @Override
+    public Subscription upsert(Subscription entity) {
+        return upsertTimer.time(() -> delegate.upsert(entity));
+    }
+
+    @Override
+    public List<Subscription> findByUserId(Integer userId) {
+        return findByUserIdTimer.time(() -> delegate.findByUserId(userId));
+    }
+
+    @Override
+    public Map<Integer, Subscription> findAllByIds(Collection<Integer> ids) {
+        return findAllByIdsTimer.time(() -> delegate.findAllByIds(ids));
+    }
+
+    @Override
+    public Map<Integer, List<Subscription>> findAllByUserIds(Collection<Integer> userIds) {
+        return findAllByUserIdsTimer.time(() -> delegate.findAllByUserIds(userIds));
+    }
+
+    @Override
+    public BitSet findEntitledUsers(List<Integer> userIds, String name, Provider provider, Instant now) {
+        return findEntitledUsersTimer.time(() -> delegate.findEntitledUsers(userIds, name, provider, now));
+    }
+
+    @Override
+    public List<Subscription> findPage(Integer afterId, int limit) {
+        return findPageTimer.time(() -> delegate.findPage(afterId, limit));
+    }
+
+    @Override
+    public List<Subscription> findByUserId(Integer userId, Integer afterId, int limit) {
+        return findByUserIdPageTimer.time(() -> delegate.findByUserId(userId, afterId, limit));
+    }
+
+    @Override
+    public List<Subscription> findPage(SubscriptionFilter filter, Integer afterId, int limit) {
+        return findPageTimer.time(() -> delegate.findPage(filter, afterId, limit));
+    }
+
+    @Override
+    public Optional<Subscription> upsertByUserIdAndName(Subscription entity) {
+        return upsertByUserIdAndNameTimer.time(() -> delegate.upsertByUserIdAndName(entity));
+    }
+
+    @Override
+    public BatchResult<Subscription> upsertAllByUserIdAndName(List<Subscription> entities) {
+        return upsertAllByUserIdAndNameTimer.time(() -> delegate.upsertAllByUserIdAndName(entities));
+    }
+
+    @Override
+    public boolean cancel(Integer id) {
+        return cancelTimer.time(() -> delegate.cancel(id));
+    }
+
+    @Override
+    public boolean expire(Integer id, Instant expirationDate) {
+        return expireTimer.time(() -> delegate.expire(id, expirationDate));
+    }
+
+    @Override
+    public List<Integer> expireOverdue(Instant now, int limit) {
+        return expireOverdueTimer.time(() -> delegate.expireOverdue(now, limit));
+    }
+
+    @Override
+    public int[] applyAll(List<SubscriptionMutation> mutations) {
+        return applyAllTimer.time(() -> delegate.applyAll(mutations));
+    }
+
+    @Override
+    public BatchResult<Subscription> insertAll(Collection<Subscription> entities) {
+        return insertAllTimer.time(() -> delegate.insertAll(entities));
+    }
+
+    @Override
+    public BatchResult<Subscription> updateAll(Collection<Subscription> entities) {
+        return updateAllTimer.time(() -> delegate.updateAll(entities));
+    }
+
+    @Override
+    public BatchResult<Subscription> upsertAll(Collection<Subscription> entities) {
+        return upsertAllTimer.time(() -> delegate.upsertAll(entities));
+    }
+}
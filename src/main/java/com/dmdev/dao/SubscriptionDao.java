@@ -1,25 +1,55 @@
 package com.dmdev.dao;
 
+import com.dmdev.dto.SubscriptionFilter;
 import com.dmdev.entity.Provider;
 import com.dmdev.entity.Status;
 import com.dmdev.entity.Subscription;
 import com.dmdev.util.ConnectionManager;
+import com.dmdev.util.PropertiesUtil;
+import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
+import lombok.Value;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import static java.sql.ResultSet.CONCUR_READ_ONLY;
+import static java.sql.ResultSet.TYPE_FORWARD_ONLY;
 import static java.sql.Statement.RETURN_GENERATED_KEYS;
+import static lombok.AccessLevel.PRIVATE;
 
-public class SubscriptionDao implements Dao<Integer, Subscription> {
+@NoArgsConstructor(access = PRIVATE)
+public class SubscriptionDao implements SubscriptionRepository {
 
     private static final SubscriptionDao INSTANCE = new SubscriptionDao();
 
+    private static final String BATCH_SIZE_KEY = "db.batch.size";
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final String FETCH_SIZE_KEY = "db.fetch-size";
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final String LOOKUP_CHUNK_SIZE_KEY = "db.lookup.chunk-size";
+    private static final int DEFAULT_LOOKUP_CHUNK_SIZE = 1000;
+    private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+    private static final int MAX_UPSERT_ATTEMPTS = 3;
+
     private static final String GET_ALL_SQL = """
             SELECT
                 id,
@@ -32,6 +62,17 @@ public class SubscriptionDao implements Dao<Integer, Subscription> {
             """;
     private static final String GET_BY_ID_SQL = GET_ALL_SQL + " WHERE id = ?";
     private static final String GET_BY_USER_ID_SQL = GET_ALL_SQL + " WHERE user_id = ?";
+    private static final String GET_BY_IDS_SQL = GET_ALL_SQL + " WHERE id = ANY (?)";
+    private static final String GET_BY_USER_IDS_SQL = GET_ALL_SQL + " WHERE user_id = ANY (?)";
+    private static final String GET_ENTITLED_USER_IDS_SQL = """
+            SELECT user_id
+            FROM subscription
+            WHERE user_id = ANY (?)
+              AND name = ?
+              AND provider = ?
+              AND status = 'ACTIVE'
+              AND expiration_date > ?
+            """;
     private static final String DELETE_BY_ID_SQL = "DELETE FROM subscription WHERE id = ?";
     private static final String SAVE_SQL =
             "INSERT INTO subscription (user_id, name, provider, expiration_date, status) VALUES (?, ?, ?, ?, ?)";
@@ -44,6 +85,54 @@ public class SubscriptionDao implements Dao<Integer, Subscription> {
                 status = ?
             WHERE id = ?
             """;
+    private static final String EXPIRE_OVERDUE_SQL = """
+            UPDATE subscription
+            SET status = 'EXPIRED'
+            WHERE status = 'ACTIVE'
+              AND id IN (SELECT id
+                         FROM subscription
+                         WHERE status = 'ACTIVE'
+                           AND expiration_date < ?
+                         ORDER BY expiration_date, id
+                         LIMIT ?)
+            """;
+    private static final String COLUMNS = "id, user_id, name, provider, expiration_date, status";
+    private static final String[] COLUMN_NAMES = COLUMNS.split(", ");
+    private static final String UPSERT_BY_USER_ID_AND_NAME_POSTGRESQL_SQL = """
+            INSERT INTO subscription (user_id, name, provider, expiration_date, status)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (user_id, name) DO UPDATE
+            SET expiration_date = EXCLUDED.expiration_date,
+                status = EXCLUDED.status
+            WHERE subscription.provider = EXCLUDED.provider
+            """;
+    private static final String UPSERT_BY_USER_ID_AND_NAME_H2_SQL = """
+            MERGE INTO subscription target
+            USING (VALUES (CAST(? AS INT), CAST(? AS VARCHAR(64)), CAST(? AS VARCHAR(16)), CAST(? AS TIMESTAMP), CAST(? AS VARCHAR(16))))
+                AS source (user_id, name, provider, expiration_date, status)
+            ON target.user_id = source.user_id AND target.name = source.name
+            WHEN MATCHED AND target.provider = source.provider THEN
+                UPDATE SET expiration_date = source.expiration_date,
+                           status = source.status
+            WHEN NOT MATCHED THEN
+                INSERT (user_id, name, provider, expiration_date, status)
+                VALUES (source.user_id, source.name, source.provider, source.expiration_date, source.status)
+            """;
+    private static final String CANCEL_BY_ID_SQL =
+            "UPDATE subscription SET status = 'CANCELED' WHERE id = ? AND status = 'ACTIVE'";
+    private static final String EXPIRE_BY_ID_SQL =
+            "UPDATE subscription SET status = 'EXPIRED', expiration_date = ? WHERE id = ? AND status <> 'EXPIRED'";
+
+    private final Dialect dialect = ConnectionManager.getDialect();
+    private final String upsertByUserIdAndNameSql = dialect.returning(
+            dialect == Dialect.POSTGRESQL ? UPSERT_BY_USER_ID_AND_NAME_POSTGRESQL_SQL : UPSERT_BY_USER_ID_AND_NAME_H2_SQL,
+            COLUMNS);
+    private final String upsertByUserIdAndNameBatchSql = dialect == Dialect.POSTGRESQL
+            ? UPSERT_BY_USER_ID_AND_NAME_POSTGRESQL_SQL
+            : UPSERT_BY_USER_ID_AND_NAME_H2_SQL;
+    private final int batchSize = PropertiesUtil.getInt(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE);
+    private final int fetchSize = PropertiesUtil.getInt(FETCH_SIZE_KEY, DEFAULT_FETCH_SIZE);
+    private final int lookupChunkSize = PropertiesUtil.getInt(LOOKUP_CHUNK_SIZE_KEY, DEFAULT_LOOKUP_CHUNK_SIZE);
 
     public static SubscriptionDao getInstance() {
         return INSTANCE;
@@ -52,28 +141,64 @@ public class SubscriptionDao implements Dao<Integer, Subscription> {
     @Override
     @SneakyThrows
     public List<Subscription> findAll() {
-        try (var connection = ConnectionManager.get();
+        try (var connection = ConnectionManager.getForRead();
              var preparedStatement = connection.prepareStatement(GET_ALL_SQL)) {
             var resultSet = preparedStatement.executeQuery();
+            var columns = Columns.of(resultSet);
             List<Subscription> subscriptions = new ArrayList<>();
             while (resultSet.next()) {
-                subscriptions.add(buildEntity(resultSet));
+                subscriptions.add(buildEntity(resultSet, columns));
             }
 
             return subscriptions;
         }
     }
 
+    /**
+     * Reads the whole table through a server-side cursor, {@code db.fetch-size} rows at a time.
+     * The returned stream holds a connection until it is closed, so use it in try-with-resources.
+     */
+    @Override
+    @SneakyThrows
+    public Stream<Subscription> streamAll() {
+        var connection = ConnectionManager.getForRead();
+        try {
+            // PostgreSQL only honours the fetch size inside a transaction, otherwise it reads the whole result
+            connection.setAutoCommit(false);
+            var preparedStatement = connection.prepareStatement(GET_ALL_SQL, TYPE_FORWARD_ONLY, CONCUR_READ_ONLY);
+            preparedStatement.setFetchSize(fetchSize);
+            var resultSet = preparedStatement.executeQuery();
+            var columns = Columns.of(resultSet);
+
+            return StreamSupport.stream(new Spliterators.AbstractSpliterator<Subscription>(
+                            Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                        @Override
+                        @SneakyThrows
+                        public boolean tryAdvance(Consumer<? super Subscription> action) {
+                            if (!resultSet.next()) {
+                                return false;
+                            }
+                            action.accept(buildEntity(resultSet, columns));
+                            return true;
+                        }
+                    }, false)
+                    .onClose(() -> closeCursor(connection, preparedStatement, resultSet));
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
     @Override
     @SneakyThrows
     public Optional<Subscription> findById(Integer id) {
-        try (var connection = ConnectionManager.get();
+        try (var connection = ConnectionManager.getForRead();
              var preparedStatement = connection.prepareStatement(GET_BY_ID_SQL)) {
             preparedStatement.setObject(1, id);
 
             var resultSet = preparedStatement.executeQuery();
             return resultSet.next()
-                    ? Optional.of(buildEntity(resultSet))
+                    ? Optional.of(buildEntity(resultSet, Columns.of(resultSet)))
                     : Optional.empty();
         }
     }
@@ -119,30 +244,585 @@ public class SubscriptionDao implements Dao<Integer, Subscription> {
         }
     }
 
+    @Override
     @SneakyThrows
     public List<Subscription> findByUserId(Integer userId) {
-        try (var connection = ConnectionManager.get();
+        try (var connection = ConnectionManager.getForRead();
              var preparedStatement = connection.prepareStatement(GET_BY_USER_ID_SQL)) {
             preparedStatement.setObject(1, userId);
 
             var resultSet = preparedStatement.executeQuery();
+            var columns = Columns.of(resultSet);
             List<Subscription> subscriptions = new ArrayList<>();
             while (resultSet.next()) {
-                subscriptions.add(buildEntity(resultSet));
+                subscriptions.add(buildEntity(resultSet, columns));
             }
 
             return subscriptions;
         }
     }
 
-    private Subscription buildEntity(ResultSet resultSet) throws SQLException {
+    /**
+     * Looks up many subscriptions on one connection. Duplicate and null ids are dropped,
+     * the rest are sent as array parameters of at most {@code db.lookup.chunk-size} ids per query.
+     *
+     * @return found subscriptions by id, ids without a row are absent
+     */
+    @Override
+    public Map<Integer, Subscription> findAllByIds(Collection<Integer> ids) {
+        Map<Integer, Subscription> subscriptions = new HashMap<>();
+        findAllByKeys(GET_BY_IDS_SQL, ids, subscription -> subscriptions.put(subscription.getId(), subscription));
+        return subscriptions;
+    }
+
+    /**
+     * Looks up the subscriptions of many users the same way as {@link #findAllByIds}.
+     *
+     * @return subscriptions by user id, users without subscriptions are absent
+     */
+    @Override
+    public Map<Integer, List<Subscription>> findAllByUserIds(Collection<Integer> userIds) {
+        Map<Integer, List<Subscription>> subscriptions = new HashMap<>();
+        findAllByKeys(GET_BY_USER_IDS_SQL, userIds, subscription -> subscriptions
+                .computeIfAbsent(subscription.getUserId(), userId -> new ArrayList<>())
+                .add(subscription));
+        return subscriptions;
+    }
+
+    /**
+     * Answers which users have an active subscription with this name and provider that expires after {@code now}.
+     * Users are sent like in {@link #findAllByIds}; with the name fixed, every user is one probe of the unique
+     * (user_id, name) index, and only user ids come back.
+     *
+     * @return a bit set with bit {@code i} set if the user at position {@code i} of {@code userIds} is entitled
+     */
+    @Override
+    @SneakyThrows
+    public BitSet findEntitledUsers(List<Integer> userIds, String name, Provider provider, Instant now) {
+        var entitled = new BitSet(userIds.size());
+        var distinctUserIds = distinctKeys(userIds);
+        if (distinctUserIds.length == 0) {
+            return entitled;
+        }
+        // a user has at most one subscription with the name, so this holds every match
+        var entitledUserIds = new int[distinctUserIds.length];
+        var entitledCount = 0;
+        try (var connection = ConnectionManager.getForRead();
+             var preparedStatement = connection.prepareStatement(GET_ENTITLED_USER_IDS_SQL)) {
+            preparedStatement.setObject(2, name);
+            preparedStatement.setObject(3, provider.name());
+            preparedStatement.setObject(4, Timestamp.from(now));
+            for (int from = 0; from < distinctUserIds.length; from += lookupChunkSize) {
+                var chunk = Arrays.copyOfRange(distinctUserIds, from, Math.min(from + lookupChunkSize, distinctUserIds.length));
+                preparedStatement.setArray(1, connection.createArrayOf("integer", chunk));
+                try (var resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        entitledUserIds[entitledCount++] = resultSet.getInt(1);
+                    }
+                }
+            }
+        }
+        Arrays.sort(entitledUserIds, 0, entitledCount);
+        for (int i = 0; i < userIds.size(); i++) {
+            var userId = userIds.get(i);
+            if (userId != null && Arrays.binarySearch(entitledUserIds, 0, entitledCount, userId) >= 0) {
+                entitled.set(i);
+            }
+        }
+        return entitled;
+    }
+
+    @Override
+    @SneakyThrows
+    public List<Subscription> findPage(SubscriptionFilter filter, Integer afterId, int limit) {
+        checkLimit(limit);
+        List<String> conditions = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        if (afterId != null) {
+            conditions.add("id > ?");
+            parameters.add(afterId);
+        }
+        if (filter.getUserId() != null) {
+            conditions.add("user_id = ?");
+            parameters.add(filter.getUserId());
+        }
+        if (filter.getStatus() != null) {
+            conditions.add("status = ?");
+            parameters.add(filter.getStatus().name());
+        }
+        if (filter.getProvider() != null) {
+            conditions.add("provider = ?");
+            parameters.add(filter.getProvider().name());
+        }
+        if (filter.getExpirationFrom() != null) {
+            conditions.add("expiration_date >= ?");
+            parameters.add(Timestamp.from(filter.getExpirationFrom()));
+        }
+        if (filter.getExpirationTo() != null) {
+            conditions.add("expiration_date < ?");
+            parameters.add(Timestamp.from(filter.getExpirationTo()));
+        }
+        parameters.add(limit);
+
+        var where = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+        var sql = GET_ALL_SQL + where + " ORDER BY id LIMIT ?";
+        try (var connection = ConnectionManager.getForRead();
+             var preparedStatement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.size(); i++) {
+                preparedStatement.setObject(i + 1, parameters.get(i));
+            }
+
+            var resultSet = preparedStatement.executeQuery();
+            var columns = Columns.of(resultSet);
+            // the limit may be far larger than the rows that match
+            List<Subscription> subscriptions = new ArrayList<>(Math.min(limit, fetchSize));
+            while (resultSet.next()) {
+                subscriptions.add(buildEntity(resultSet, columns));
+            }
+
+            return subscriptions;
+        }
+    }
+
+    /**
+     * Inserts the subscription or, if the user already has one with the same name and provider,
+     * updates its expiration date and status, in a single statement.
+     *
+     * @return the stored row, or empty if the user has a subscription with this name for another provider
+     */
+    @Override
+    @SneakyThrows
+    public Optional<Subscription> upsertByUserIdAndName(Subscription entity) {
+        try (var connection = ConnectionManager.get();
+             var preparedStatement = connection.prepareStatement(upsertByUserIdAndNameSql)) {
+            prepareStatementToUpsert(preparedStatement, entity);
+
+            var resultSet = preparedStatement.executeQuery();
+            return resultSet.next()
+                    ? Optional.of(buildEntity(resultSet, Columns.of(resultSet)))
+                    : Optional.empty();
+        }
+    }
+
+    /**
+     * Executes the conditional upserts in batches of {@code db.batch.size} and reads the stored rows back
+     * from the generated keys, which only contain the rows the statement changed.
+     * <p>
+     * Unlike {@code ON CONFLICT}, the {@code MERGE} of H2 can fail with a unique violation when a concurrent
+     * transaction inserts the same user and name first. Such a batch is replayed row by row, and a row that
+     * raced is retried, which then sees the other row.
+     */
+    @Override
+    @SneakyThrows
+    public BatchResult<Subscription> upsertAllByUserIdAndName(List<Subscription> entities) {
+        var result = new BatchResult<Subscription>();
+        if (entities.isEmpty()) {
+            return result;
+        }
+        try (var connection = ConnectionManager.get();
+             var preparedStatement = connection.prepareStatement(upsertByUserIdAndNameBatchSql, COLUMN_NAMES)) {
+            for (int from = 0; from < entities.size(); from += batchSize) {
+                var chunk = entities.subList(from, Math.min(from + batchSize, entities.size()));
+                try {
+                    upsertBatch(preparedStatement, chunk, from, result);
+                } catch (SQLException e) {
+                    if (!isUniqueViolation(e)) {
+                        throw e;
+                    }
+                    preparedStatement.clearBatch();
+                    upsertOneByOne(connection, chunk, from, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    @SneakyThrows
+    public boolean cancel(Integer id) {
+        try (var connection = ConnectionManager.get();
+             var preparedStatement = connection.prepareStatement(CANCEL_BY_ID_SQL)) {
+            preparedStatement.setObject(1, id);
+
+            return preparedStatement.executeUpdate() > 0;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public boolean expire(Integer id, Instant expirationDate) {
+        try (var connection = ConnectionManager.get();
+             var preparedStatement = connection.prepareStatement(EXPIRE_BY_ID_SQL)) {
+            preparedStatement.setObject(1, Timestamp.from(expirationDate));
+            preparedStatement.setObject(2, id);
+
+            return preparedStatement.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Expires up to {@code limit} active subscriptions whose expiration date is before {@code now},
+     * longest overdue first, in one statement and returns their ids.
+     */
+    @Override
+    @SneakyThrows
+    public List<Integer> expireOverdue(Instant now, int limit) {
+        checkLimit(limit);
+        try (var connection = ConnectionManager.get();
+             var preparedStatement = connection.prepareStatement(dialect.returning(EXPIRE_OVERDUE_SQL, "id"))) {
+            preparedStatement.setObject(1, Timestamp.from(now));
+            preparedStatement.setObject(2, limit);
+
+            var resultSet = preparedStatement.executeQuery();
+            List<Integer> ids = new ArrayList<>(Math.min(limit, fetchSize));
+            while (resultSet.next()) {
+                ids.add(resultSet.getObject("id", Integer.class));
+            }
+
+            return ids;
+        }
+    }
+
+    /**
+     * Applies the mutations in order in one transaction. Consecutive mutations of the same kind
+     * go to the database as one JDBC batch. If any of them fails, none is applied. The ids of upserted rows
+     * are read from the generated keys of their batch and set once the transaction has committed.
+     *
+     * @return the update count of every mutation, 0 where the conditional statement did not match
+     */
+    @Override
+    @SneakyThrows
+    public int[] applyAll(List<SubscriptionMutation> mutations) {
+        var updateCounts = new int[mutations.size()];
+        if (mutations.isEmpty()) {
+            return updateCounts;
+        }
+        var upsertedIds = new Integer[mutations.size()];
+        try (var connection = ConnectionManager.get()) {
+            connection.setAutoCommit(false);
+            try {
+                var from = 0;
+                while (from < mutations.size()) {
+                    var kind = mutations.get(from).getKind();
+                    var to = from + 1;
+                    while (to < mutations.size() && mutations.get(to).getKind() == kind) {
+                        to++;
+                    }
+                    var upsert = kind == SubscriptionMutation.Kind.UPSERT;
+                    try (var preparedStatement = upsert
+                            ? connection.prepareStatement(sqlOf(kind), COLUMN_NAMES)
+                            : connection.prepareStatement(sqlOf(kind))) {
+                        for (int i = from; i < to; i++) {
+                            bindMutation(preparedStatement, mutations.get(i));
+                            preparedStatement.addBatch();
+                        }
+                        var chunkUpdateCounts = preparedStatement.executeBatch();
+                        System.arraycopy(chunkUpdateCounts, 0, updateCounts, from, chunkUpdateCounts.length);
+                        if (upsert) {
+                            readUpsertedIds(preparedStatement, mutations, from, to, upsertedIds);
+                        }
+                    }
+                    from = to;
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        for (int i = 0; i < mutations.size(); i++) {
+            if (mutations.get(i).getKind() == SubscriptionMutation.Kind.UPSERT) {
+                mutations.get(i).getSubscription().setId(upsertedIds[i]);
+            }
+        }
+        return updateCounts;
+    }
+
+    @Override
+    public BatchResult<Subscription> insertAll(Collection<Subscription> entities) {
+        var result = new BatchResult<Subscription>();
+        executeInBatches(new ArrayList<>(entities), indexesOf(entities.size()), true, result);
+        return result;
+    }
+
+    @Override
+    public BatchResult<Subscription> updateAll(Collection<Subscription> entities) {
+        var result = new BatchResult<Subscription>();
+        executeInBatches(new ArrayList<>(entities), indexesOf(entities.size()), false, result);
+        return result;
+    }
+
+    @Override
+    public BatchResult<Subscription> upsertAll(Collection<Subscription> entities) {
+        List<Subscription> toInsert = new ArrayList<>();
+        List<Integer> insertIndexes = new ArrayList<>();
+        List<Subscription> toUpdate = new ArrayList<>();
+        List<Integer> updateIndexes = new ArrayList<>();
+        var index = 0;
+        for (Subscription entity : entities) {
+            if (entity.getId() == null) {
+                toInsert.add(entity);
+                insertIndexes.add(index++);
+            } else {
+                toUpdate.add(entity);
+                updateIndexes.add(index++);
+            }
+        }
+
+        var result = new BatchResult<Subscription>();
+        executeInBatches(toInsert, insertIndexes, true, result);
+        executeInBatches(toUpdate, updateIndexes, false, result);
+        return result;
+    }
+
+    @SneakyThrows
+    private void findAllByKeys(String sql, Collection<Integer> keys, Consumer<Subscription> action) {
+        var distinctKeys = distinctKeys(keys);
+        if (distinctKeys.length == 0) {
+            return;
+        }
+        try (var connection = ConnectionManager.getForRead();
+             var preparedStatement = connection.prepareStatement(sql)) {
+            for (int from = 0; from < distinctKeys.length; from += lookupChunkSize) {
+                var chunk = Arrays.copyOfRange(distinctKeys, from, Math.min(from + lookupChunkSize, distinctKeys.length));
+                preparedStatement.setArray(1, connection.createArrayOf("integer", chunk));
+                try (var resultSet = preparedStatement.executeQuery()) {
+                    var columns = Columns.of(resultSet);
+                    while (resultSet.next()) {
+                        action.accept(buildEntity(resultSet, columns));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+    }
+
+    private static Integer[] distinctKeys(Collection<Integer> keys) {
+        return keys.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toArray(Integer[]::new);
+    }
+
+    @SneakyThrows
+    private void executeInBatches(List<Subscription> entities,
+                                  List<Integer> indexes,
+                                  boolean insert,
+                                  BatchResult<Subscription> result) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        try (var connection = ConnectionManager.get();
+             var preparedStatement = insert
+                     ? connection.prepareStatement(SAVE_SQL, RETURN_GENERATED_KEYS)
+                     : connection.prepareStatement(UPDATE_BY_ID_SQL)) {
+            connection.setAutoCommit(false);
+            for (int from = 0; from < entities.size(); from += batchSize) {
+                var to = Math.min(from + batchSize, entities.size());
+                var chunk = entities.subList(from, to);
+                var chunkIndexes = indexes.subList(from, to);
+                try {
+                    for (Subscription entity : chunk) {
+                        bindBatchRow(preparedStatement, entity, insert);
+                        preparedStatement.addBatch();
+                    }
+                    var updateCounts = preparedStatement.executeBatch();
+                    if (insert) {
+                        fillGeneratedKeys(preparedStatement, chunk);
+                    }
+                    connection.commit();
+                    for (int i = 0; i < chunk.size(); i++) {
+                        addRowResult(result, chunkIndexes.get(i), chunk.get(i), updateCounts[i]);
+                    }
+                } catch (SQLException e) {
+                    connection.rollback();
+                    preparedStatement.clearBatch();
+                    executeOneByOne(connection, preparedStatement, chunk, chunkIndexes, insert, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fallback for a chunk whose batch failed: the driver does not reliably report which rows were applied,
+     * so the chunk is replayed row by row to tell the failed rows apart.
+     */
+    private void executeOneByOne(Connection connection,
+                                 PreparedStatement preparedStatement,
+                                 List<Subscription> chunk,
+                                 List<Integer> chunkIndexes,
+                                 boolean insert,
+                                 BatchResult<Subscription> result) throws SQLException {
+        for (int i = 0; i < chunk.size(); i++) {
+            var entity = chunk.get(i);
+            try {
+                bindBatchRow(preparedStatement, entity, insert);
+                var updateCount = preparedStatement.executeUpdate();
+                if (insert) {
+                    fillGeneratedKeys(preparedStatement, List.of(entity));
+                }
+                connection.commit();
+                addRowResult(result, chunkIndexes.get(i), entity, updateCount);
+            } catch (SQLException e) {
+                connection.rollback();
+                result.addFailure(BatchFailure.of(chunkIndexes.get(i), entity, e.getMessage()));
+            }
+        }
+    }
+
+    private void upsertBatch(PreparedStatement preparedStatement,
+                             List<Subscription> chunk,
+                             int offset,
+                             BatchResult<Subscription> result) throws SQLException {
+        for (Subscription entity : chunk) {
+            prepareStatementToUpsert(preparedStatement, entity);
+            preparedStatement.addBatch();
+        }
+        preparedStatement.executeBatch();
+
+        Map<UpsertKey, Subscription> stored = new HashMap<>();
+        try (var generatedKeys = preparedStatement.getGeneratedKeys()) {
+            var columns = Columns.of(generatedKeys);
+            while (generatedKeys.next()) {
+                var subscription = buildEntity(generatedKeys, columns);
+                stored.put(UpsertKey.from(subscription), subscription);
+            }
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            addUpsertResult(result, offset + i, chunk.get(i), stored.get(UpsertKey.from(chunk.get(i))));
+        }
+    }
+
+    private void readUpsertedIds(PreparedStatement preparedStatement,
+                                 List<SubscriptionMutation> mutations,
+                                 int from,
+                                 int to,
+                                 Integer[] upsertedIds) throws SQLException {
+        Map<UpsertKey, Integer> ids = new HashMap<>();
+        try (var generatedKeys = preparedStatement.getGeneratedKeys()) {
+            var columns = Columns.of(generatedKeys);
+            while (generatedKeys.next()) {
+                ids.put(UpsertKey.from(buildEntity(generatedKeys, columns)), generatedKeys.getInt(columns.id));
+            }
+        }
+        for (int i = from; i < to; i++) {
+            upsertedIds[i] = ids.get(UpsertKey.from(mutations.get(i).getSubscription()));
+        }
+    }
+
+    private void upsertOneByOne(Connection connection,
+                                List<Subscription> chunk,
+                                int offset,
+                                BatchResult<Subscription> result) throws SQLException {
+        try (var preparedStatement = connection.prepareStatement(upsertByUserIdAndNameSql)) {
+            for (int i = 0; i < chunk.size(); i++) {
+                var entity = chunk.get(i);
+                prepareStatementToUpsert(preparedStatement, entity);
+                for (int attempt = 1; ; attempt++) {
+                    try (var resultSet = preparedStatement.executeQuery()) {
+                        var stored = resultSet.next() ? buildEntity(resultSet, Columns.of(resultSet)) : null;
+                        addUpsertResult(result, offset + i, entity, stored);
+                        break;
+                    } catch (SQLException e) {
+                        if (attempt == MAX_UPSERT_ATTEMPTS || !isUniqueViolation(e)) {
+                            throw e;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void addUpsertResult(BatchResult<Subscription> result, int index, Subscription entity, Subscription stored) {
+        if (stored != null) {
+            result.addSuccess(stored);
+        } else {
+            result.addFailure(BatchFailure.of(index, entity, String.format(
+                    "Subscription %s of user %d belongs to another provider", entity.getName(), entity.getUserId())));
+        }
+    }
+
+    private static boolean isUniqueViolation(SQLException e) {
+        for (var next = e; next != null; next = next.getNextException()) {
+            if (UNIQUE_VIOLATION_SQL_STATE.equals(next.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void bindBatchRow(PreparedStatement preparedStatement, Subscription entity, boolean insert) throws SQLException {
+        prepareStatementToUpsert(preparedStatement, entity);
+        if (!insert) {
+            preparedStatement.setObject(6, entity.getId());
+        }
+    }
+
+    private void fillGeneratedKeys(PreparedStatement preparedStatement, List<Subscription> entities) throws SQLException {
+        try (var generatedKeys = preparedStatement.getGeneratedKeys()) {
+            for (Subscription entity : entities) {
+                generatedKeys.next();
+                entity.setId(generatedKeys.getObject("id", Integer.class));
+            }
+        }
+    }
+
+    private void addRowResult(BatchResult<Subscription> result, int index, Subscription entity, int updateCount) {
+        if (updateCount == 0) {
+            result.addFailure(BatchFailure.of(index, entity,
+                    String.format("Subscription %d does not exist", entity.getId())));
+        } else {
+            result.addSuccess(entity);
+        }
+    }
+
+    private String sqlOf(SubscriptionMutation.Kind kind) {
+        return switch (kind) {
+            case UPSERT -> upsertByUserIdAndNameBatchSql;
+            case CANCEL -> CANCEL_BY_ID_SQL;
+            case EXPIRE -> EXPIRE_BY_ID_SQL;
+        };
+    }
+
+    private void bindMutation(PreparedStatement preparedStatement, SubscriptionMutation mutation) throws SQLException {
+        switch (mutation.getKind()) {
+            case UPSERT -> prepareStatementToUpsert(preparedStatement, mutation.getSubscription());
+            case CANCEL -> preparedStatement.setObject(1, mutation.getId());
+            case EXPIRE -> {
+                preparedStatement.setObject(1, Timestamp.from(mutation.getExpirationDate()));
+                preparedStatement.setObject(2, mutation.getId());
+            }
+        }
+    }
+
+    private List<Integer> indexesOf(int size) {
+        List<Integer> indexes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+
+    @SneakyThrows
+    private void closeCursor(Connection connection, PreparedStatement preparedStatement, ResultSet resultSet) {
+        try (connection; preparedStatement; resultSet) {
+            connection.commit();
+        }
+    }
+
+    private Subscription buildEntity(ResultSet resultSet, Columns columns) throws SQLException {
         return Subscription.builder()
-                .id(resultSet.getObject("id", Integer.class))
-                .userId(resultSet.getObject("user_id", Integer.class))
-                .name(resultSet.getObject("name", String.class))
-                .provider(Provider.valueOf(resultSet.getObject("provider", String.class)))
-                .expirationDate(resultSet.getObject("expiration_date", Timestamp.class).toInstant())
-                .status(Status.valueOf(resultSet.getObject("status", String.class)))
+                .id(resultSet.getInt(columns.id))
+                .userId(resultSet.getInt(columns.userId))
+                .name(resultSet.getString(columns.name))
+                .provider(Provider.findByName(resultSet.getString(columns.provider)))
+                .expirationDate(dialect.getInstant(resultSet, columns.expirationDate))
+                .status(Status.findByName(resultSet.getString(columns.status)))
                 .build();
     }
 
@@ -153,4 +833,41 @@ public class SubscriptionDao implements Dao<Integer, Subscription> {
         preparedStatement.setObject(4, Timestamp.from(entity.getExpirationDate()));
         preparedStatement.setObject(5, entity.getStatus().name());
     }
+
+    @Value(staticConstructor = "of")
+    private static class UpsertKey {
+        Integer userId;
+        String name;
+        Provider provider;
+
+        private static UpsertKey from(Subscription subscription) {
+            return of(subscription.getUserId(), subscription.getName(), subscription.getProvider());
+        }
+    }
+
+    /**
+     * Positions of the subscription columns in a result set, looked up once instead of by name for every row.
+     */
+    private static class Columns {
+
+        private final int id;
+        private final int userId;
+        private final int name;
+        private final int provider;
+        private final int expirationDate;
+        private final int status;
+
+        private Columns(ResultSet resultSet) throws SQLException {
+            this.id = resultSet.findColumn("id");
+            this.userId = resultSet.findColumn("user_id");
+            this.name = resultSet.findColumn("name");
+            this.provider = resultSet.findColumn("provider");
+            this.expirationDate = resultSet.findColumn("expiration_date");
+            this.status = resultSet.findColumn("status");
+        }
+
+        private static Columns of(ResultSet resultSet) throws SQLException {
+            return new Columns(resultSet);
+        }
+    }
 }
@@ -0,0 +1,37 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Subscription;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * A single write that {@link SubscriptionRepository#applyAll} can batch with others:
+ * {@link SubscriptionRepository#upsertByUserIdAndName}, {@link SubscriptionRepository#cancel} or {@link SubscriptionRepository#expire}.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class SubscriptionMutation {
+    Kind kind;
+    Integer id;
+    Subscription subscription;
+    Instant expirationDate;
+
+    public static SubscriptionMutation upsert(Subscription subscription) {
+        return new SubscriptionMutation(Kind.UPSERT, null, subscription, null);
+    }
+
+    public static SubscriptionMutation cancel(Integer id) {
+        return new SubscriptionMutation(Kind.CANCEL, id, null, null);
+    }
+
+    public static SubscriptionMutation expire(Integer id, Instant expirationDate) {
+        return new SubscriptionMutation(Kind.EXPIRE, id, null, expirationDate);
+    }
+
+    public enum Kind {
+        UPSERT, CANCEL, EXPIRE
+    }
+}
@@ -0,0 +1,128 @@
+package com.dmdev.dao;
+
+import com.dmdev.dto.SubscriptionFilter;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Subscription;
+
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Subscription queries on top of {@link Dao}. {@link SubscriptionDao} answers them from the database,
+ * {@link InMemorySubscriptionDao} from memory, and {@link ForwardingSubscriptionDao} decorates either one.
+ */
+public interface SubscriptionRepository extends Dao<Integer, Subscription> {
+
+    /**
+     * Streams every subscription. The stream may hold resources until it is closed, so use it in try-with-resources.
+     */
+    Stream<Subscription> streamAll();
+
+    default void forEach(Consumer<Subscription> action) {
+        try (var subscriptions = streamAll()) {
+            subscriptions.forEach(action);
+        }
+    }
+
+    List<Subscription> findByUserId(Integer userId);
+
+    /**
+     * Looks up many subscriptions at once. Duplicate and null ids are dropped.
+     *
+     * @return found subscriptions by id, ids without a row are absent
+     */
+    Map<Integer, Subscription> findAllByIds(Collection<Integer> ids);
+
+    /**
+     * Looks up the subscriptions of many users at once.
+     *
+     * @return subscriptions by user id, users without subscriptions are absent
+     */
+    Map<Integer, List<Subscription>> findAllByUserIds(Collection<Integer> userIds);
+
+    /**
+     * Answers which users have an active subscription with this name and provider that expires after {@code now}.
+     *
+     * @return a bit set with bit {@code i} set if the user at position {@code i} of {@code userIds} is entitled
+     */
+    BitSet findEntitledUsers(List<Integer> userIds, String name, Provider provider, Instant now);
+
+    default List<Subscription> findPage(Integer afterId, int limit) {
+        return findPage(SubscriptionFilter.builder().build(), afterId, limit);
+    }
+
+    default List<Subscription> findByUserId(Integer userId, Integer afterId, int limit) {
+        return findPage(SubscriptionFilter.builder().userId(userId).build(), afterId, limit);
+    }
+
+    /**
+     * Keyset pagination: returns up to {@code limit} subscriptions with {@code id > afterId} in id order.
+     * Pass {@code null} for the first page and the id of the last returned subscription for the next one.
+     *
+     * @throws IllegalArgumentException if {@code limit} is less than 1
+     */
+    List<Subscription> findPage(SubscriptionFilter filter, Integer afterId, int limit);
+
+    /**
+     * Inserts the subscription or, if the user already has one with the same name and provider,
+     * updates its expiration date and status.
+     *
+     * @return the stored row, or empty if the user has a subscription with this name for another provider
+     */
+    Optional<Subscription> upsertByUserIdAndName(Subscription entity);
+
+    /**
+     * Like {@link #upsertByUserIdAndName} for many subscriptions. The provider check is part of every write,
+     * so it also holds against concurrent upserts of the same user and name.
+     *
+     * @return the stored rows, and a failure for every subscription the user has with this name for another provider
+     */
+    default BatchResult<Subscription> upsertAllByUserIdAndName(List<Subscription> entities) {
+        var result = new BatchResult<Subscription>();
+        for (int i = 0; i < entities.size(); i++) {
+            var entity = entities.get(i);
+            var index = i;
+            upsertByUserIdAndName(entity).ifPresentOrElse(result::addSuccess, () -> result.addFailure(BatchFailure.of(
+                    index, entity, String.format("Subscription %s of user %d belongs to another provider",
+                            entity.getName(), entity.getUserId()))));
+        }
+        return result;
+    }
+
+    /**
+     * Cancels the subscription only if it is still active.
+     *
+     * @return {@code false} if the subscription does not exist or is not active
+     */
+    boolean cancel(Integer id);
+
+    /**
+     * Expires the subscription at {@code expirationDate} only if it has not expired yet.
+     *
+     * @return {@code false} if the subscription does not exist or has already expired
+     */
+    boolean expire(Integer id, Instant expirationDate);
+
+    /**
+     * Expires up to {@code limit} active subscriptions whose expiration date is before {@code now},
+     * longest overdue first, and returns their ids.
+     *
+     * @throws IllegalArgumentException if {@code limit} is less than 1
+     */
+    List<Integer> expireOverdue(Instant now, int limit);
+
+    /**
+     * Applies the mutations in order. If any of them fails, none is applied. Like {@link #insert}, it sets
+     * the id of the stored row on the subscription of every upsert, or {@code null} if the upsert did not match.
+     *
+     * @return the update count of every mutation, 0 where the conditional statement did not match and
+     * {@link java.sql.Statement#SUCCESS_NO_INFO} where the driver does not know the count of an applied one
+     */
+    int[] applyAll(List<SubscriptionMutation> mutations);
+}
@@ -0,0 +1,225 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Subscription;
+import com.dmdev.util.PropertiesUtil;
+import lombok.SneakyThrows;
+import lombok.Value;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.lang.System.Logger.Level.ERROR;
+
+/**
+ * Write-behind pipeline in front of {@link SubscriptionRepository}. Mutations are queued and a single writer thread
+ * applies them with {@link SubscriptionRepository#applyAll}, up to {@code maxBatchSize} in one transaction. After the
+ * first mutation of a flush the writer waits at most {@code flushInterval} for more to arrive.
+ * <p>
+ * Mutations run in submission order. A run of consecutive mutations with the same effect, upserts of one user,
+ * name and provider, cancels of one id or expires of one id at one date, is coalesced: only the last one is
+ * executed and the futures of all of them complete with its outcome once the transaction commits.
+ * Nothing is moved past another mutation, so conditional transitions of one subscription, like expire, cancel,
+ * expire, keep their order. A future completes with {@code true} if the statement changed a row.
+ * <p>
+ * Submitting blocks while the queue is full. {@link #close()} stops accepting mutations
+ * and waits until everything queued has been written.
+ */
+public class SubscriptionWriteBehind implements AutoCloseable {
+
+    private static final System.Logger log = System.getLogger(SubscriptionWriteBehind.class.getName());
+
+    private static final String CAPACITY_KEY = "write-behind.capacity";
+    private static final int DEFAULT_CAPACITY = 10000;
+    private static final String BATCH_SIZE_KEY = "write-behind.batch-size";
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final String FLUSH_INTERVAL_KEY = "write-behind.flush-interval-ms";
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 10;
+
+    private final SubscriptionRepository subscriptionDao;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<PendingMutation> queue;
+    // submitters hold the read lock, so close() can not slip in between their check and the enqueue
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public SubscriptionWriteBehind(SubscriptionRepository subscriptionDao) {
+        this(subscriptionDao,
+                PropertiesUtil.getInt(CAPACITY_KEY, DEFAULT_CAPACITY),
+                PropertiesUtil.getInt(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE),
+                Duration.ofMillis(PropertiesUtil.getLong(FLUSH_INTERVAL_KEY, DEFAULT_FLUSH_INTERVAL_MS)));
+    }
+
+    public SubscriptionWriteBehind(SubscriptionRepository subscriptionDao, int capacity, int maxBatchSize, Duration flushInterval) {
+        if (capacity < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid write-behind size: capacity %d, batch size %d", capacity, maxBatchSize));
+        }
+        this.subscriptionDao = subscriptionDao;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::run, "subscription-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public CompletableFuture<Boolean> upsertByUserIdAndName(Subscription entity) {
+        return submit(SubscriptionMutation.upsert(entity));
+    }
+
+    public CompletableFuture<Boolean> cancel(Integer id) {
+        return submit(SubscriptionMutation.cancel(id));
+    }
+
+    public CompletableFuture<Boolean> expire(Integer id, Instant expirationDate) {
+        return submit(SubscriptionMutation.expire(id, expirationDate));
+    }
+
+    @Override
+    @SneakyThrows(InterruptedException.class)
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        writer.join();
+    }
+
+    @SneakyThrows(InterruptedException.class)
+    private CompletableFuture<Boolean> submit(SubscriptionMutation mutation) {
+        var pending = PendingMutation.of(mutation, new CompletableFuture<>());
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Write-behind is closed");
+            }
+            queue.put(pending);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return pending.getFuture();
+    }
+
+    private void run() {
+        List<PendingMutation> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            collect(batch);
+            if (!batch.isEmpty()) {
+                try {
+                    flush(batch);
+                } catch (RuntimeException e) {
+                    // the writer must survive, otherwise nothing would drain the queue any more
+                    log.log(ERROR, "Write-behind flush failed", e);
+                    batch.forEach(pending -> pending.getFuture().completeExceptionally(e));
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<PendingMutation> batch) {
+        try {
+            var first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+            var deadline = System.nanoTime() + flushIntervalNanos;
+            while (batch.size() < maxBatchSize) {
+                if (closed) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    return;
+                }
+                var next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException ignored) {
+            // the writer only stops through close(), what has been collected so far is flushed as usual
+        }
+    }
+
+    private void flush(List<PendingMutation> batch) {
+        List<List<PendingMutation>> groups = new ArrayList<>();
+        MutationKey previousKey = null;
+        for (PendingMutation pending : batch) {
+            var key = MutationKey.from(pending.getMutation());
+            if (!key.equals(previousKey)) {
+                groups.add(new ArrayList<>());
+                previousKey = key;
+            }
+            groups.get(groups.size() - 1).add(pending);
+        }
+
+        List<SubscriptionMutation> mutations = new ArrayList<>(groups.size());
+        for (List<PendingMutation> group : groups) {
+            mutations.add(group.get(group.size() - 1).getMutation());
+        }
+        try {
+            var updateCounts = subscriptionDao.applyAll(mutations);
+            for (int i = 0; i < groups.size(); i++) {
+                // a driver may report Statement.SUCCESS_NO_INFO for an applied mutation
+                complete(groups.get(i), updateCounts[i] != 0);
+            }
+        } catch (Exception e) {
+            // one failing mutation rolls the whole flush back, so apply them one by one to fail only that one
+            for (int i = 0; i < groups.size(); i++) {
+                try {
+                    complete(groups.get(i), applyOne(mutations.get(i)));
+                } catch (Exception mutationException) {
+                    groups.get(i).forEach(pending -> pending.getFuture().completeExceptionally(mutationException));
+                }
+            }
+        }
+    }
+
+    private boolean applyOne(SubscriptionMutation mutation) {
+        return switch (mutation.getKind()) {
+            case UPSERT -> subscriptionDao.upsertByUserIdAndName(mutation.getSubscription()).isPresent();
+            case CANCEL -> subscriptionDao.cancel(mutation.getId());
+            case EXPIRE -> subscriptionDao.expire(mutation.getId(), mutation.getExpirationDate());
+        };
+    }
+
+    private static void complete(List<PendingMutation> group, boolean applied) {
+        group.forEach(pending -> pending.getFuture().complete(applied));
+    }
+
+    @Value(staticConstructor = "of")
+    private static class PendingMutation {
+        SubscriptionMutation mutation;
+        CompletableFuture<Boolean> future;
+    }
+
+    @Value(staticConstructor = "of")
+    private static class MutationKey {
+        SubscriptionMutation.Kind kind;
+        Integer id;
+        Integer userId;
+        String name;
+        Provider provider;
+        Instant expirationDate;
+
+        static MutationKey from(SubscriptionMutation mutation) {
+            var subscription = mutation.getSubscription();
+            return subscription != null
+                    ? of(mutation.getKind(), null, subscription.getUserId(), subscription.getName(), subscription.getProvider(), null)
+                    : of(mutation.getKind(), mutation.getId(), null, null, null, mutation.getExpirationDate());
+        }
+    }
+}
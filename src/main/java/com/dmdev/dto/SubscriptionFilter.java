@@ -0,0 +1,18 @@
+package com.dmdev.dto;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+@Value
+@Builder
+public class SubscriptionFilter {
+    Integer userId;
+    Status status;
+    Provider provider;
+    Instant expirationFrom;
+    Instant expirationTo;
+}
@@ -1,18 +1,27 @@
 package com.dmdev.entity;
 
-import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 public enum Provider {
     GOOGLE, APPLE;
 
+    private static final Map<String, Optional<Provider>> BY_NAME = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        for (Provider provider : values()) {
+            BY_NAME.put(provider.name(), Optional.of(provider));
+        }
+    }
+
     public static Provider findByName(String name) {
         return findByNameOpt(name).orElseThrow();
     }
 
     public static Optional<Provider> findByNameOpt(String name) {
-        return Arrays.stream(values())
-                .filter(provider -> provider.name().equalsIgnoreCase(name))
-                .findFirst();
+        return name == null
+                ? Optional.empty()
+                : BY_NAME.getOrDefault(name, Optional.empty());
     }
 }
@@ -1,5 +1,27 @@
 package com.dmdev.entity;
 
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
 public enum Status {
-    ACTIVE, CANCELED, EXPIRED
+    ACTIVE, CANCELED, EXPIRED;
+
+    private static final Map<String, Optional<Status>> BY_NAME = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        for (Status status : values()) {
+            BY_NAME.put(status.name(), Optional.of(status));
+        }
+    }
+
+    public static Status findByName(String name) {
+        return findByNameOpt(name).orElseThrow();
+    }
+
+    public static Optional<Status> findByNameOpt(String name) {
+        return name == null
+                ? Optional.empty()
+                : BY_NAME.getOrDefault(name, Optional.empty());
+    }
 }
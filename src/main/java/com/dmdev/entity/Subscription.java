@@ -12,7 +12,7 @@ import java.time.Instant;
 @Accessors(chain = true)
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Subscription implements BaseEntity<Integer> {
     private Integer id;
     private Integer userId;
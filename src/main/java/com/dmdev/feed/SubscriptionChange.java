@@ -0,0 +1,20 @@
+package com.dmdev.feed;
+
+import com.dmdev.entity.Subscription;
+import lombok.Value;
+
+/**
+ * A committed write to the subscription table. {@code subscription} is the written row for inserts, updates
+ * and upserts and {@code null} otherwise.
+ */
+@Value(staticConstructor = "of")
+public class SubscriptionChange {
+    long sequence;
+    Kind kind;
+    Integer subscriptionId;
+    Subscription subscription;
+
+    public enum Kind {
+        INSERTED, UPDATED, UPSERTED, DELETED, CANCELED, EXPIRED
+    }
+}
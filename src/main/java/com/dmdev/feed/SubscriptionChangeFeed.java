@@ -0,0 +1,420 @@
+package com.dmdev.feed;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.exception.SubscriptionException;
+import com.dmdev.util.PropertiesUtil;
+import lombok.SneakyThrows;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.System.Logger.Level.ERROR;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Sequenced feed of subscription changes, so consumers can pull what changed since their last sequence
+ * instead of rescanning the table. Sequences start at 1 and have no gaps. They follow the order changes are
+ * published in, which for concurrent writers need not be the order their transactions committed in.
+ * <p>
+ * The last {@code capacity} changes are kept in a ring buffer. With a log file every change is also appended
+ * to it, so a consumer that fell further behind, or reads after a restart, catches up from the file, and the
+ * sequence continues from the log after a restart. Each log record is a length-prefixed binary change;
+ * a record torn by a crash is cut off when the log is opened. The log is never compacted.
+ * <p>
+ * Publishing only puts the change into the ring, a writer thread appends it to the log. The ring doubles as
+ * the writer's buffer: a publish that would overwrite a change not yet written waits for the writer.
+ * If an append fails, the feed is {@linkplain #isBroken() broken}: publishing and reading from the ring go on,
+ * but nothing more is logged, a read that needs the missing part of the log throws, and after a restart the
+ * sequence continues from the last logged change. A consumer that sees the feed broken, or a last sequence
+ * below the one it has processed, has to rescan the table.
+ */
+public class SubscriptionChangeFeed implements AutoCloseable {
+
+    private static final System.Logger log = System.getLogger(SubscriptionChangeFeed.class.getName());
+
+    private static final String CAPACITY_KEY = "change-feed.capacity";
+    private static final String LOG_PATH_KEY = "change-feed.log-path";
+    private static final int DEFAULT_CAPACITY = 65_536;
+    // the log offset of every 1024th change is kept, so a catch-up read seeks close to its first change
+    private static final int CHECKPOINT_INTERVAL = 1024;
+    private static final int HAS_ID = 1;
+    private static final int HAS_SUBSCRIPTION = 2;
+
+    private static final SubscriptionChange.Kind[] KINDS = SubscriptionChange.Kind.values();
+    private static final Provider[] PROVIDERS = Provider.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private final SubscriptionChange[] ring;
+    private final Path logPath;
+    private final FileChannel logChannel;
+    private final ReentrantLock lock = new ReentrantLock();
+    // signalled when a change is published or the feed is closed
+    private final Condition published = lock.newCondition();
+    // signalled when the writer has logged changes or stopped
+    private final Condition logged = lock.newCondition();
+    private final Thread writer;
+    private long[] checkpoints = new long[16];
+    private long logSize;
+    private long lastSequence;
+    private long lastLoggedSequence;
+    // the first change published by this instance, older ones are only in the log
+    private final long firstRingSequence;
+    private volatile boolean broken;
+    private boolean closed;
+
+    public SubscriptionChangeFeed() {
+        this(PropertiesUtil.getInt(CAPACITY_KEY, DEFAULT_CAPACITY), logPathOf(PropertiesUtil.get(LOG_PATH_KEY)));
+    }
+
+    /**
+     * @param logPath the append-only log, created if missing, or {@code null} to keep changes in memory only
+     */
+    @SneakyThrows(IOException.class)
+    public SubscriptionChangeFeed(int capacity, Path logPath) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.ring = new SubscriptionChange[capacity];
+        this.logPath = logPath;
+        if (logPath != null) {
+            this.logChannel = FileChannel.open(logPath, CREATE, READ, WRITE);
+            try {
+                recover();
+            } catch (IOException | RuntimeException e) {
+                logChannel.close();
+                throw e;
+            }
+            this.writer = new Thread(this::writeLog, "subscription-change-feed-writer");
+            writer.setDaemon(true);
+        } else {
+            this.logChannel = null;
+            this.writer = null;
+        }
+        this.lastLoggedSequence = lastSequence;
+        this.firstRingSequence = lastSequence + 1;
+        if (writer != null) {
+            writer.start();
+        }
+    }
+
+    /**
+     * Appends a change, keeping a copy of the subscription. Waits only while the ring is full of changes
+     * the writer has not logged yet.
+     *
+     * @return the sequence of the change
+     */
+    public long publish(SubscriptionChange.Kind kind, Integer subscriptionId, Subscription subscription) {
+        var copy = copy(subscription);
+        lock.lock();
+        try {
+            while (logChannel != null && !broken && !closed && lastSequence - lastLoggedSequence == ring.length) {
+                logged.awaitUninterruptibly();
+            }
+            var change = SubscriptionChange.of(lastSequence + 1, kind, subscriptionId, copy);
+            ring[indexOf(change.getSequence())] = change;
+            lastSequence = change.getSequence();
+            published.signal();
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the sequence of the last change, 0 before the first one
+     */
+    public long getLastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} once appending to the log has failed, see the class comment
+     */
+    public boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * Reads up to {@code limit} changes in sequence order, starting with {@code fromSequence}.
+     * A consumer passes the sequence after the last change it has processed.
+     *
+     * @return the changes, empty if there are none from {@code fromSequence} yet
+     * @throws SubscriptionException if the changes from {@code fromSequence} are neither in the ring buffer
+     *                               nor in the log, so the consumer has to rescan the table
+     */
+    @SneakyThrows(IOException.class)
+    public List<SubscriptionChange> read(long fromSequence, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        var from = Math.max(fromSequence, 1);
+        long to;
+        long logOffset;
+        List<SubscriptionChange> fromRing = new ArrayList<>();
+        lock.lock();
+        try {
+            if (from > lastSequence) {
+                return List.of();
+            }
+            to = Math.min(lastSequence, from + limit - 1);
+            var oldestInRing = Math.max(firstRingSequence, lastSequence - ring.length + 1);
+            for (long sequence = Math.max(from, oldestInRing); sequence <= to; sequence++) {
+                fromRing.add(copy(ring[indexOf(sequence)]));
+            }
+            if (from >= oldestInRing) {
+                return fromRing;
+            }
+            if (logChannel == null) {
+                throw new SubscriptionException(String.format(
+                        "Changes before sequence %d are no longer retained, requested from %d", oldestInRing, from));
+            }
+            if (Math.min(to, oldestInRing - 1) > lastLoggedSequence) {
+                throw new SubscriptionException(String.format(
+                        "The change log is broken after sequence %d, requested from %d", lastLoggedSequence, from));
+            }
+            to = Math.min(to, oldestInRing - 1);
+            logOffset = checkpoints[(int) ((from - 1) / CHECKPOINT_INTERVAL)];
+        } finally {
+            lock.unlock();
+        }
+        // every change up to the last logged sequence is already written, appends only go past it
+        var changes = readLog(logOffset, from, to);
+        changes.addAll(fromRing);
+        return changes;
+    }
+
+    /**
+     * Waits until the writer has logged everything published so far, then closes the log.
+     */
+    @Override
+    @SneakyThrows({IOException.class, InterruptedException.class})
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            published.signal();
+            logged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (writer != null) {
+            writer.join();
+            logChannel.close();
+        }
+    }
+
+    private void writeLog() {
+        while (true) {
+            long from;
+            long to;
+            List<SubscriptionChange> changes = new ArrayList<>();
+            lock.lock();
+            try {
+                while (lastLoggedSequence == lastSequence && !closed) {
+                    published.awaitUninterruptibly();
+                }
+                if (lastLoggedSequence == lastSequence) {
+                    return;
+                }
+                from = lastLoggedSequence + 1;
+                to = lastSequence;
+                for (long sequence = from; sequence <= to; sequence++) {
+                    changes.add(ring[indexOf(sequence)]);
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                append(changes);
+            } catch (IOException e) {
+                log.log(ERROR, String.format("Could not append changes %d to %d to %s, the change log is broken",
+                        from, to, logPath), e);
+                lock.lock();
+                try {
+                    broken = true;
+                    logged.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+        }
+    }
+
+    private void append(List<SubscriptionChange> changes) throws IOException {
+        List<ByteBuffer> records = new ArrayList<>(changes.size());
+        var length = 0;
+        for (SubscriptionChange change : changes) {
+            var record = encode(change);
+            records.add(record);
+            length += record.remaining();
+        }
+        var batch = ByteBuffer.allocate(length);
+        records.forEach(batch::put);
+        batch.flip();
+        try {
+            var offset = logSize;
+            while (batch.hasRemaining()) {
+                offset += logChannel.write(batch, offset);
+            }
+        } catch (IOException e) {
+            // drop partly written records, so a restart continues after the last complete one
+            try {
+                logChannel.truncate(logSize);
+            } catch (IOException truncateException) {
+                e.addSuppressed(truncateException);
+            }
+            throw e;
+        }
+        lock.lock();
+        try {
+            for (int i = 0; i < changes.size(); i++) {
+                checkpoint(changes.get(i).getSequence(), logSize);
+                logSize += records.get(i).limit();
+            }
+            lastLoggedSequence = changes.get(changes.size() - 1).getSequence();
+            logged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<SubscriptionChange> readLog(long offset, long from, long to) throws IOException {
+        List<SubscriptionChange> changes = new ArrayList<>((int) (to - from + 1));
+        try (var channel = FileChannel.open(logPath, READ)) {
+            var input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(offset)), 1 << 16));
+            while (true) {
+                var payload = new byte[input.readInt()];
+                input.readFully(payload);
+                var change = decode(ByteBuffer.wrap(payload));
+                if (change.getSequence() >= from) {
+                    changes.add(change);
+                }
+                if (change.getSequence() == to) {
+                    return changes;
+                }
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        try (var channel = FileChannel.open(logPath, READ)) {
+            var input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            while (true) {
+                byte[] payload;
+                try {
+                    payload = new byte[input.readInt()];
+                    input.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                var sequence = ByteBuffer.wrap(payload).getLong();
+                if (sequence != lastSequence + 1) {
+                    throw new IllegalStateException("Change log " + logPath + " skips from sequence " + lastSequence + " to " + sequence);
+                }
+                checkpoint(sequence, logSize);
+                lastSequence = sequence;
+                logSize += Integer.BYTES + payload.length;
+            }
+        }
+        logChannel.truncate(logSize);
+    }
+
+    private void checkpoint(long sequence, long offset) {
+        if ((sequence - 1) % CHECKPOINT_INTERVAL != 0) {
+            return;
+        }
+        var index = (int) ((sequence - 1) / CHECKPOINT_INTERVAL);
+        if (index == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, index * 2);
+        }
+        checkpoints[index] = offset;
+    }
+
+    private int indexOf(long sequence) {
+        return (int) ((sequence - 1) % ring.length);
+    }
+
+    private static ByteBuffer encode(SubscriptionChange change) {
+        var subscription = change.getSubscription();
+        var name = subscription != null ? subscription.getName().getBytes(UTF_8) : null;
+        var length = Long.BYTES + 2 + Integer.BYTES
+                     + (name != null ? Integer.BYTES + Short.BYTES + name.length + 2 + Long.BYTES + Integer.BYTES : 0);
+        var flags = (change.getSubscriptionId() != null ? HAS_ID : 0) | (subscription != null ? HAS_SUBSCRIPTION : 0);
+        var record = ByteBuffer.allocate(Integer.BYTES + length)
+                .putInt(length)
+                .putLong(change.getSequence())
+                .put((byte) change.getKind().ordinal())
+                .put((byte) flags)
+                .putInt(change.getSubscriptionId() != null ? change.getSubscriptionId() : 0);
+        if (subscription != null) {
+            record.putInt(subscription.getUserId())
+                    .putShort((short) name.length)
+                    .put(name)
+                    .put((byte) subscription.getProvider().ordinal())
+                    .put((byte) subscription.getStatus().ordinal())
+                    .putLong(subscription.getExpirationDate().getEpochSecond())
+                    .putInt(subscription.getExpirationDate().getNano());
+        }
+        return record.flip();
+    }
+
+    private static SubscriptionChange decode(ByteBuffer payload) {
+        var sequence = payload.getLong();
+        var kind = KINDS[payload.get()];
+        var flags = payload.get();
+        var id = payload.getInt();
+        var subscriptionId = (flags & HAS_ID) != 0 ? id : null;
+        Subscription subscription = null;
+        if ((flags & HAS_SUBSCRIPTION) != 0) {
+            var userId = payload.getInt();
+            var name = new byte[payload.getShort()];
+            payload.get(name);
+            subscription = Subscription.builder()
+                    .id(subscriptionId)
+                    .userId(userId)
+                    .name(new String(name, UTF_8))
+                    .provider(PROVIDERS[payload.get()])
+                    .status(STATUSES[payload.get()])
+                    .expirationDate(Instant.ofEpochSecond(payload.getLong(), payload.getInt()))
+                    .build();
+        }
+        return SubscriptionChange.of(sequence, kind, subscriptionId, subscription);
+    }
+
+    private static SubscriptionChange copy(SubscriptionChange change) {
+        return change.getSubscription() != null
+                ? SubscriptionChange.of(change.getSequence(), change.getKind(), change.getSubscriptionId(), copy(change.getSubscription()))
+                : change;
+    }
+
+    private static Subscription copy(Subscription subscription) {
+        return subscription != null ? subscription.toBuilder().build() : null;
+    }
+
+    private static Path logPathOf(String value) {
+        return value == null || value.isBlank() ? null : Path.of(value.trim());
+    }
+}
@@ -0,0 +1,22 @@
+package com.dmdev.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+
+    @Override
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    @Override
+    public Map<String, TimerSnapshot> snapshot() {
+        Map<String, TimerSnapshot> snapshot = new TreeMap<>();
+        timers.forEach((name, histogram) -> snapshot.put(name, histogram.snapshot()));
+        return snapshot;
+    }
+}
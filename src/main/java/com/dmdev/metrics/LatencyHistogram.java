@@ -0,0 +1,102 @@
+package com.dmdev.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram in the spirit of HdrHistogram. Every power of two is split into 64 buckets,
+ * which keeps the relative error under 1.6%. Recording is an index computation and an atomic increment,
+ * without locks or allocation. Durations above about 137 seconds all fall into the last bucket.
+ */
+class LatencyHistogram implements Timer {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    @Override
+    public void record(long durationNanos) {
+        var duration = Math.max(durationNanos, 0);
+        counts.incrementAndGet(indexOf(duration));
+        totalNanos.add(duration);
+        updateMax(duration);
+    }
+
+    @Override
+    public void recordError(long durationNanos) {
+        record(durationNanos);
+        errorCount.increment();
+    }
+
+    TimerSnapshot snapshot() {
+        var snapshotCounts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshotCounts[i] = counts.get(i);
+            count += snapshotCounts[i];
+        }
+        var max = maxNanos.get();
+        return TimerSnapshot.builder()
+                .count(count)
+                .errorCount(errorCount.sum())
+                .meanNanos(count == 0 ? 0 : totalNanos.sum() / count)
+                .p50Nanos(percentile(snapshotCounts, count, 0.5, max))
+                .p90Nanos(percentile(snapshotCounts, count, 0.9, max))
+                .p99Nanos(percentile(snapshotCounts, count, 0.99, max))
+                .p999Nanos(percentile(snapshotCounts, count, 0.999, max))
+                .maxNanos(max)
+                .build();
+    }
+
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        var exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        var shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        var shift = index / SUB_BUCKET_COUNT - 1;
+        var subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((long) (subBucket + 1) << shift) - 1;
+    }
+
+    private void updateMax(long duration) {
+        // a plain read is enough almost every time, the max only grows for the first few recordings
+        var max = maxNanos.get();
+        while (duration > max && !maxNanos.compareAndSet(max, duration)) {
+            max = maxNanos.get();
+        }
+    }
+
+    private static long percentile(long[] counts, long count, double quantile, long max) {
+        if (count == 0) {
+            return 0;
+        }
+        var target = (long) Math.ceil(count * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                // the last bucket also holds everything too large to track, only the maximum is known there
+                return i == counts.length - 1 ? max : Math.min(upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+}
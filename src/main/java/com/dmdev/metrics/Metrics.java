@@ -0,0 +1,21 @@
+package com.dmdev.metrics;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Registry used by the code that can not be handed one, such as the connection pool.
+ * Components look their timers up when they are created, so install the registry at startup.
+ */
+@UtilityClass
+public class Metrics {
+
+    private static volatile MetricsRegistry registry = NoopMetricsRegistry.getInstance();
+
+    public static MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    public static void setRegistry(MetricsRegistry registry) {
+        Metrics.registry = registry;
+    }
+}
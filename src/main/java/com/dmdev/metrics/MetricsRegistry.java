@@ -0,0 +1,16 @@
+package com.dmdev.metrics;
+
+import java.util.Map;
+
+/**
+ * Source of named timers. Look a timer up once and keep it, recording through it is the cheap part.
+ */
+public interface MetricsRegistry {
+
+    Timer timer(String name);
+
+    /**
+     * @return the current state of every timer by name
+     */
+    Map<String, TimerSnapshot> snapshot();
+}
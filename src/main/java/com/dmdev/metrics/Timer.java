@@ -0,0 +1,25 @@
+package com.dmdev.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Records how long an operation took and whether it failed.
+ */
+public interface Timer {
+
+    void record(long durationNanos);
+
+    void recordError(long durationNanos);
+
+    default <T> T time(Supplier<T> operation) {
+        var startedAt = System.nanoTime();
+        try {
+            var result = operation.get();
+            record(System.nanoTime() - startedAt);
+            return result;
+        } catch (Throwable e) {
+            recordError(System.nanoTime() - startedAt);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.dmdev.metrics;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Latencies are in nanoseconds. Percentiles are the upper bounds of their histogram buckets,
+ * so they are at most about 1.6% above the recorded values.
+ */
+@Value
+@Builder
+public class TimerSnapshot {
+    long count;
+    long errorCount;
+    long meanNanos;
+    long p50Nanos;
+    long p90Nanos;
+    long p99Nanos;
+    long p999Nanos;
+    long maxNanos;
+}
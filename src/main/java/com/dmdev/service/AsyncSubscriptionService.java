@@ -0,0 +1,86 @@
+package com.dmdev.service;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.util.PropertiesUtil;
+import lombok.SneakyThrows;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking facade over {@link SubscriptionService}. Every call runs on its own virtual thread, so callers
+ * do not hold a platform thread while the database works. At most {@code maxInFlight} calls reach the service
+ * at the same time, the rest wait for a permit on their virtual threads instead of queueing for a connection.
+ * <p>
+ * With replicas the caller does not read its own writes: {@link com.dmdev.util.ReplicaRouter} keeps only
+ * the thread that wrote on the primary, which here is the call's virtual thread. A read the caller makes after
+ * the returned future completes may go to a replica that has not caught up yet; use the subscription
+ * the future completes with instead of reading it back.
+ */
+public class AsyncSubscriptionService implements AutoCloseable {
+
+    private static final String MAX_IN_FLIGHT_KEY = "db.pool.max-size";
+    private static final int DEFAULT_MAX_IN_FLIGHT = 10;
+
+    private final SubscriptionService subscriptionService;
+    private final Semaphore inFlight;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public AsyncSubscriptionService(SubscriptionService subscriptionService) {
+        this(subscriptionService, PropertiesUtil.getInt(MAX_IN_FLIGHT_KEY, DEFAULT_MAX_IN_FLIGHT));
+    }
+
+    public AsyncSubscriptionService(SubscriptionService subscriptionService, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("In-flight limit must be positive: " + maxInFlight);
+        }
+        this.subscriptionService = subscriptionService;
+        this.inFlight = new Semaphore(maxInFlight, true);
+    }
+
+    public CompletableFuture<Subscription> upsert(CreateSubscriptionDto dto) {
+        return submit(() -> subscriptionService.upsert(dto));
+    }
+
+    public CompletableFuture<Void> cancel(Integer subscriptionId) {
+        return submit(() -> {
+            subscriptionService.cancel(subscriptionId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> expire(Integer subscriptionId) {
+        return submit(() -> {
+            subscriptionService.expire(subscriptionId);
+            return null;
+        });
+    }
+
+    /**
+     * Stops accepting calls and waits for the submitted ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            acquire();
+            try {
+                return call.get();
+            } finally {
+                inFlight.release();
+            }
+        }, executor);
+    }
+
+    @SneakyThrows(InterruptedException.class)
+    private void acquire() {
+        inFlight.acquire();
+    }
+}
@@ -0,0 +1,87 @@
+package com.dmdev.service;
+
+import com.dmdev.dao.SubscriptionRepository;
+import com.dmdev.util.PropertiesUtil;
+import lombok.Getter;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.lang.System.Logger.Level.ERROR;
+
+/**
+ * Expires every active subscription whose expiration date has passed, {@code chunkSize} rows per statement.
+ */
+public class ExpirationSweeper implements AutoCloseable {
+
+    private static final System.Logger log = System.getLogger(ExpirationSweeper.class.getName());
+
+    private static final String CHUNK_SIZE_KEY = "sweeper.chunk-size";
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final SubscriptionRepository subscriptionDao;
+    private final Clock clock;
+    private final int chunkSize;
+    private ScheduledExecutorService scheduler;
+    @Getter
+    private volatile SweepResult lastResult;
+
+    public ExpirationSweeper(SubscriptionRepository subscriptionDao, Clock clock) {
+        this(subscriptionDao, clock, PropertiesUtil.getInt(CHUNK_SIZE_KEY, DEFAULT_CHUNK_SIZE));
+    }
+
+    public ExpirationSweeper(SubscriptionRepository subscriptionDao, Clock clock, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.subscriptionDao = subscriptionDao;
+        this.clock = clock;
+        this.chunkSize = chunkSize;
+    }
+
+    public SweepResult sweep() {
+        var startedAt = System.nanoTime();
+        var now = Instant.now(clock);
+        var expiredCount = 0;
+        int chunkCount;
+        do {
+            chunkCount = subscriptionDao.expireOverdue(now, chunkSize).size();
+            expiredCount += chunkCount;
+        } while (chunkCount == chunkSize);
+
+        lastResult = SweepResult.of(expiredCount, Duration.ofNanos(System.nanoTime() - startedAt));
+        return lastResult;
+    }
+
+    public synchronized void start(Duration period, Consumer<SweepResult> listener) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Expiration sweeper is already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "expiration-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                listener.accept(sweep());
+            } catch (Exception e) {
+                // an exception would cancel all further runs of the scheduled task
+                log.log(ERROR, "Expiration sweep failed", e);
+            }
+        }, 0, period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
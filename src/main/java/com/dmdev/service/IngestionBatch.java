@@ -0,0 +1,19 @@
+package com.dmdev.service;
+
+import com.dmdev.entity.Subscription;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Outcome of one window of {@link SubscriptionIngestion}: the DTOs at indexes
+ * {@code firstIndex} to {@code firstIndex + size - 1}, split into mapped subscriptions and failures,
+ * both in input order.
+ */
+@Value(staticConstructor = "of")
+public class IngestionBatch {
+    long firstIndex;
+    int size;
+    List<Subscription> subscriptions;
+    List<IngestionFailure> failures;
+}
@@ -0,0 +1,15 @@
+package com.dmdev.service;
+
+import com.dmdev.validator.Error;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Validation errors of the DTO at {@code index}, counted from the start of the ingested input.
+ */
+@Value(staticConstructor = "of")
+public class IngestionFailure {
+    long index;
+    List<Error> errors;
+}
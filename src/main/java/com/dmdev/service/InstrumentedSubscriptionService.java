@@ -0,0 +1,71 @@
+package com.dmdev.service;
+
+import com.dmdev.dao.SubscriptionRepository;
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Subscription;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.metrics.MetricsRegistry;
+import com.dmdev.metrics.Timer;
+import com.dmdev.validator.CreateSubscriptionValidator;
+
+import java.time.Clock;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Records latency and errors of every service operation in timers named {@code service.<method>}.
+ * Validation and business rule failures count as errors too.
+ */
+public class InstrumentedSubscriptionService extends SubscriptionService {
+
+    private final Timer upsertTimer;
+    private final Timer upsertAllTimer;
+    private final Timer cancelTimer;
+    private final Timer expireTimer;
+    private final Timer findEntitledUsersTimer;
+
+    public InstrumentedSubscriptionService(SubscriptionRepository subscriptionDao,
+                                           CreateSubscriptionMapper createSubscriptionMapper,
+                                           CreateSubscriptionValidator createSubscriptionValidator,
+                                           Clock clock,
+                                           MetricsRegistry metricsRegistry) {
+        super(subscriptionDao, createSubscriptionMapper, createSubscriptionValidator, clock);
+        this.upsertTimer = metricsRegistry.timer("service.upsert");
+        this.upsertAllTimer = metricsRegistry.timer("service.upsertAll");
+        this.cancelTimer = metricsRegistry.timer("service.cancel");
+        this.expireTimer = metricsRegistry.timer("service.expire");
+        this.findEntitledUsersTimer = metricsRegistry.timer("service.findEntitledUsers");
+    }
+
+    @Override
+    public Subscription upsert(CreateSubscriptionDto dto) {
+        return upsertTimer.time(() -> super.upsert(dto));
+    }
+
+    @Override
+    public List<UpsertResult> upsertAll(List<CreateSubscriptionDto> dtos) {
+        return upsertAllTimer.time(() -> super.upsertAll(dtos));
+    }
+
+    @Override
+    public void cancel(Integer subscriptionId) {
+        cancelTimer.time(() -> {
+            super.cancel(subscriptionId);
+            return null;
+        });
+    }
+
+    @Override
+    public void expire(Integer subscriptionId) {
+        expireTimer.time(() -> {
+            super.expire(subscriptionId);
+            return null;
+        });
+    }
+
+    @Override
+    public BitSet findEntitledUsers(List<Integer> userIds, String name, Provider provider) {
+        return findEntitledUsersTimer.time(() -> super.findEntitledUsers(userIds, name, provider));
+    }
+}
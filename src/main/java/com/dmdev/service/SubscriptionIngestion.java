@@ -0,0 +1,180 @@
+package com.dmdev.service;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.util.PropertiesUtil;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import com.dmdev.validator.ValidationResult;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Validates and maps bulk {@link CreateSubscriptionDto} input on a dedicated {@link ForkJoinPool}.
+ * <p>
+ * The input is read on the caller's thread in windows of {@code windowSize} DTOs. While one window is
+ * validated and mapped in parallel the next one is read, so at most two windows are held in memory
+ * however long the input is. Each window is passed to the sink as an {@link IngestionBatch} on the caller's
+ * thread, windows and the DTOs inside them keep the input order.
+ * <p>
+ * All DTOs of one {@link #ingest} call are validated against the same reading of the clock.
+ */
+public class SubscriptionIngestion implements AutoCloseable {
+
+    private static final String PARALLELISM_KEY = "ingestion.parallelism";
+    private static final String WINDOW_SIZE_KEY = "ingestion.window-size";
+    private static final int DEFAULT_WINDOW_SIZE = 4096;
+    // below this many DTOs a task validates them itself instead of splitting further
+    private static final int SPLIT_THRESHOLD = 256;
+
+    private final CreateSubscriptionValidator createSubscriptionValidator;
+    private final CreateSubscriptionMapper createSubscriptionMapper;
+    private final Clock clock;
+    private final int windowSize;
+    private final ForkJoinPool pool;
+
+    public SubscriptionIngestion(CreateSubscriptionValidator createSubscriptionValidator,
+                                 CreateSubscriptionMapper createSubscriptionMapper,
+                                 Clock clock) {
+        this(createSubscriptionValidator,
+                createSubscriptionMapper,
+                clock,
+                PropertiesUtil.getInt(PARALLELISM_KEY, Runtime.getRuntime().availableProcessors()),
+                PropertiesUtil.getInt(WINDOW_SIZE_KEY, DEFAULT_WINDOW_SIZE));
+    }
+
+    public SubscriptionIngestion(CreateSubscriptionValidator createSubscriptionValidator,
+                                 CreateSubscriptionMapper createSubscriptionMapper,
+                                 Clock clock,
+                                 int parallelism,
+                                 int windowSize) {
+        if (parallelism < 1 || windowSize < 1) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid ingestion settings: parallelism %d, window size %d", parallelism, windowSize));
+        }
+        this.createSubscriptionValidator = createSubscriptionValidator;
+        this.createSubscriptionMapper = createSubscriptionMapper;
+        this.clock = clock;
+        this.windowSize = windowSize;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public void ingest(Stream<CreateSubscriptionDto> dtos, Consumer<IngestionBatch> sink) {
+        ingest(dtos::iterator, sink);
+    }
+
+    /**
+     * Processes the whole input and returns after the sink has received its last batch.
+     * An exception thrown by the sink stops the ingestion, DTOs after its batch are not read.
+     */
+    public void ingest(Iterable<CreateSubscriptionDto> dtos, Consumer<IngestionBatch> sink) {
+        var iterator = dtos.iterator();
+        var now = Instant.now(clock);
+        long nextIndex = 0;
+        Window running = null;
+        while (iterator.hasNext()) {
+            var window = read(iterator, nextIndex, now);
+            nextIndex += window.size;
+            pool.execute(window.task);
+            if (running != null) {
+                sink.accept(running.complete());
+            }
+            running = window;
+        }
+        if (running != null) {
+            sink.accept(running.complete());
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private Window read(Iterator<CreateSubscriptionDto> iterator, long firstIndex, Instant now) {
+        var dtos = new CreateSubscriptionDto[windowSize];
+        int size = 0;
+        while (size < windowSize && iterator.hasNext()) {
+            dtos[size++] = iterator.next();
+        }
+        return new Window(firstIndex, dtos, size, now);
+    }
+
+    private class Window {
+
+        private final long firstIndex;
+        private final CreateSubscriptionDto[] dtos;
+        private final int size;
+        private final Instant now;
+        private final Subscription[] subscriptions;
+        private final ValidationResult[] failures;
+        private final ForkJoinTask<Void> task;
+
+        private Window(long firstIndex, CreateSubscriptionDto[] dtos, int size, Instant now) {
+            this.firstIndex = firstIndex;
+            this.dtos = dtos;
+            this.size = size;
+            this.now = now;
+            this.subscriptions = new Subscription[size];
+            this.failures = new ValidationResult[size];
+            this.task = new RangeTask(this, 0, size);
+        }
+
+        private void process(int i) {
+            var validationResult = createSubscriptionValidator.validate(dtos[i], now);
+            if (validationResult.hasErrors()) {
+                failures[i] = validationResult;
+            } else {
+                subscriptions[i] = createSubscriptionMapper.map(dtos[i]);
+            }
+        }
+
+        private IngestionBatch complete() {
+            task.join();
+            List<Subscription> mapped = new ArrayList<>(size);
+            List<IngestionFailure> failed = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (failures[i] != null) {
+                    failed.add(IngestionFailure.of(firstIndex + i, failures[i].getErrors()));
+                } else {
+                    mapped.add(subscriptions[i]);
+                }
+            }
+            return IngestionBatch.of(firstIndex, size, mapped, failed);
+        }
+    }
+
+    private static class RangeTask extends RecursiveAction {
+
+        private final Window window;
+        private final int from;
+        private final int to;
+
+        private RangeTask(Window window, int from, int to) {
+            this.window = window;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    window.process(i);
+                }
+                return;
+            }
+            var middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(window, from, middle), new RangeTask(window, middle, to));
+        }
+    }
+}
@@ -1,63 +1,142 @@
 package com.dmdev.service;
 
-import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.dao.SubscriptionRepository;
 import com.dmdev.dto.CreateSubscriptionDto;
 import com.dmdev.entity.Provider;
-import com.dmdev.entity.Status;
 import com.dmdev.entity.Subscription;
 import com.dmdev.exception.SubscriptionException;
 import com.dmdev.exception.ValidationException;
 import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.util.PropertiesUtil;
+import com.dmdev.util.TransactionManager;
 import com.dmdev.validator.CreateSubscriptionValidator;
+import com.dmdev.validator.Error;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @RequiredArgsConstructor
 public class SubscriptionService {
 
-    private final SubscriptionDao subscriptionDao;
+    private static final String CHUNK_SIZE_KEY = "db.lookup.chunk-size";
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final SubscriptionRepository subscriptionDao;
     private final CreateSubscriptionMapper createSubscriptionMapper;
     private final CreateSubscriptionValidator createSubscriptionValidator;
     private final Clock clock;
+    private final int chunkSize = PropertiesUtil.getInt(CHUNK_SIZE_KEY, DEFAULT_CHUNK_SIZE);
 
     public Subscription upsert(CreateSubscriptionDto dto) {
-        var validationResult = createSubscriptionValidator.validate(dto);
+        var validationResult = createSubscriptionValidator.validate(dto, Instant.now(clock));
         if (validationResult.hasErrors()) {
             throw new ValidationException(validationResult.getErrors());
         }
 
-        Subscription subscription = subscriptionDao.findByUserId(dto.getUserId()).stream()
-                .filter(existingSubscription -> existingSubscription.getName().equals(dto.getName()))
-                .filter(existingSubscription -> existingSubscription.getProvider() == Provider.findByName(dto.getProvider()))
-                .findFirst()
-                .map(existingSubscription -> existingSubscription
-                        .setExpirationDate(dto.getExpirationDate())
-                        .setStatus(Status.ACTIVE))
-                .orElseGet(() -> createSubscriptionMapper.map(dto));
+        var subscription = createSubscriptionMapper.map(dto);
+        return subscriptionDao.upsertByUserIdAndName(subscription)
+                .orElseThrow(() -> new SubscriptionException(String.format(
+                        "Subscription %s of user %d belongs to another provider", dto.getName(), dto.getUserId())));
+    }
 
-        return subscriptionDao.upsert(subscription);
+    /**
+     * Works through the dtos in chunks of {@code db.lookup.chunk-size}, each written in its own transaction
+     * with batched conditional upserts, so a large batch holds neither one long transaction nor one huge statement.
+     * The check that an existing subscription belongs to the same provider is part of every upsert, so it also
+     * holds against a concurrent upsert of the same user and name.
+     * An exception stops the batch, chunks before the failed one stay committed.
+     */
+    public List<UpsertResult> upsertAll(List<CreateSubscriptionDto> dtos) {
+        var results = new UpsertResult[dtos.size()];
+        for (int start = 0; start < dtos.size(); start += chunkSize) {
+            var chunk = dtos.subList(start, Math.min(dtos.size(), start + chunkSize));
+            var offset = start;
+            TransactionManager.inTransaction(() -> upsertChunk(chunk, offset, results));
+        }
+        return List.of(results);
+    }
+
+    private void upsertChunk(List<CreateSubscriptionDto> dtos, int offset, UpsertResult[] results) {
+        var keys = new SubscriptionKey[dtos.size()];
+        Map<SubscriptionKey, Subscription> pendingSubscriptions = new LinkedHashMap<>();
+        var validationResults = createSubscriptionValidator.validateAll(dtos, Instant.now(clock));
+        for (int i = 0; i < dtos.size(); i++) {
+            var dto = dtos.get(i);
+            var validationResult = validationResults.get(i);
+            if (validationResult.hasErrors()) {
+                results[offset + i] = UpsertResult.failure(offset + i, validationResult.getErrors());
+                continue;
+            }
+            keys[i] = SubscriptionKey.of(dto.getUserId(), dto.getName(), Provider.findByName(dto.getProvider()));
+            // a later dto of the same subscription wins, like separate upserts in a row would
+            pendingSubscriptions.put(keys[i], createSubscriptionMapper.map(dto));
+        }
+
+        List<SubscriptionKey> pendingKeys = new ArrayList<>(pendingSubscriptions.keySet());
+        var result = subscriptionDao.upsertAllByUserIdAndName(new ArrayList<>(pendingSubscriptions.values()));
+        Map<SubscriptionKey, Subscription> storedSubscriptions = new HashMap<>();
+        for (Subscription stored : result.getSucceeded()) {
+            storedSubscriptions.put(SubscriptionKey.from(stored), stored);
+        }
+        Map<SubscriptionKey, List<Error>> failedKeys = new HashMap<>();
+        for (var failure : result.getFailures()) {
+            failedKeys.put(pendingKeys.get(failure.getIndex()),
+                    List.of(Error.of(104, "subscription could not be saved: " + failure.getMessage())));
+        }
+
+        for (int i = 0; i < dtos.size(); i++) {
+            if (keys[i] != null) {
+                results[offset + i] = failedKeys.containsKey(keys[i])
+                        ? UpsertResult.failure(offset + i, failedKeys.get(keys[i]))
+                        : UpsertResult.success(offset + i, storedSubscriptions.get(keys[i]));
+            }
+        }
     }
 
     public void cancel(Integer subscriptionId) {
-        var subscription = subscriptionDao.findById(subscriptionId)
-                .orElseThrow(IllegalArgumentException::new);
-        if (subscription.getStatus() != Status.ACTIVE) {
-            throw new SubscriptionException(String.format("Only active subscription %d can be canceled", subscriptionId));
+        if (subscriptionDao.cancel(subscriptionId)) {
+            return;
         }
-        subscription.setStatus(Status.CANCELED);
-        subscriptionDao.update(subscription);
+        // the conditional update did not match: find out whether the subscription is missing or not active
+        subscriptionDao.findById(subscriptionId)
+                .orElseThrow(IllegalArgumentException::new);
+        throw new SubscriptionException(String.format("Only active subscription %d can be canceled", subscriptionId));
     }
 
     public void expire(Integer subscriptionId) {
-        var subscription = subscriptionDao.findById(subscriptionId)
+        if (subscriptionDao.expire(subscriptionId, Instant.now(clock))) {
+            return;
+        }
+        subscriptionDao.findById(subscriptionId)
                 .orElseThrow(IllegalArgumentException::new);
-        if (subscription.getStatus() == Status.EXPIRED) {
-            throw new SubscriptionException(String.format("Subscription %d has already expired", subscriptionId));
+        throw new SubscriptionException(String.format("Subscription %d has already expired", subscriptionId));
+    }
+
+    /**
+     * Answers which users have an active, not yet expired subscription with this name and provider.
+     *
+     * @return a bit set with bit {@code i} set if the user at position {@code i} of {@code userIds} is entitled
+     */
+    public BitSet findEntitledUsers(List<Integer> userIds, String name, Provider provider) {
+        return subscriptionDao.findEntitledUsers(userIds, name, provider, Instant.now(clock));
+    }
+
+    @Value(staticConstructor = "of")
+    private static class SubscriptionKey {
+        Integer userId;
+        String name;
+        Provider provider;
+
+        static SubscriptionKey from(Subscription subscription) {
+            return of(subscription.getUserId(), subscription.getName(), subscription.getProvider());
         }
-        subscription.setStatus(Status.EXPIRED);
-        subscription.setExpirationDate(Instant.now(clock));
-        subscriptionDao.update(subscription);
     }
 }
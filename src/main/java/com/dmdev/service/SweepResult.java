@@ -0,0 +1,11 @@
+package com.dmdev.service;
+
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value(staticConstructor = "of")
+public class SweepResult {
+    int expiredCount;
+    Duration duration;
+}
@@ -0,0 +1,26 @@
+package com.dmdev.service;
+
+import com.dmdev.entity.Subscription;
+import com.dmdev.validator.Error;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class UpsertResult {
+    int index;
+    Subscription subscription;
+    List<Error> errors;
+
+    public static UpsertResult success(int index, Subscription subscription) {
+        return new UpsertResult(index, subscription, List.of());
+    }
+
+    public static UpsertResult failure(int index, List<Error> errors) {
+        return new UpsertResult(index, null, errors);
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+}
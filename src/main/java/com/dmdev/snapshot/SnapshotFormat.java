@@ -0,0 +1,35 @@
+package com.dmdev.snapshot;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Layout of a subscription snapshot file, all numbers big-endian:
+ * <pre>
+ * header   32 bytes: magic, version, record count, user count, name pool length, zero padding
+ * users     8 bytes per user, sorted by user id: user id, number of the user's first record
+ * records  28 bytes per subscription, grouped by user in the order of the user index:
+ *          id, user id, name offset in the pool, name length (short), provider ordinal (byte),
+ *          status ordinal (byte), expiration epoch second (long), expiration nanosecond
+ * names    UTF-8 bytes of the distinct subscription names
+ * </pre>
+ * Provider and status are stored as enum ordinals, so a change of either enum needs a new version.
+ */
+@UtilityClass
+class SnapshotFormat {
+
+    static final int MAGIC = 0x53554253;
+    static final int VERSION = 2;
+
+    static final int HEADER_SIZE = 32;
+    static final int USER_ENTRY_SIZE = 8;
+    static final int RECORD_SIZE = 28;
+
+    static final int RECORD_ID = 0;
+    static final int RECORD_USER_ID = 4;
+    static final int RECORD_NAME_OFFSET = 8;
+    static final int RECORD_NAME_LENGTH = 12;
+    static final int RECORD_PROVIDER = 14;
+    static final int RECORD_STATUS = 15;
+    static final int RECORD_EXPIRATION_SECOND = 16;
+    static final int RECORD_EXPIRATION_NANO = 24;
+}
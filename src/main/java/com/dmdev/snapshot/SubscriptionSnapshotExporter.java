@@ -0,0 +1,172 @@
+package com.dmdev.snapshot;
+
+import com.dmdev.dao.SubscriptionRepository;
+import com.dmdev.entity.Subscription;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.dmdev.snapshot.SnapshotFormat.HEADER_SIZE;
+import static com.dmdev.snapshot.SnapshotFormat.MAGIC;
+import static com.dmdev.snapshot.SnapshotFormat.RECORD_SIZE;
+import static com.dmdev.snapshot.SnapshotFormat.USER_ENTRY_SIZE;
+import static com.dmdev.snapshot.SnapshotFormat.VERSION;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes the subscription table into a snapshot file for {@link SubscriptionSnapshotReader}.
+ * Rows are streamed from the dao into primitive columns, about 30 bytes per row plus the distinct names,
+ * then sorted by user and written out.
+ */
+@RequiredArgsConstructor
+public class SubscriptionSnapshotExporter {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final SubscriptionRepository subscriptionDao;
+
+    /**
+     * Writes the snapshot to a temporary file in the directory of {@code target}, forces it to disk and moves it
+     * into place, so readers never see a partial file, not even after a crash. A reader that already mapped
+     * the previous file keeps reading it until it swaps.
+     *
+     * @return the number of exported subscriptions
+     */
+    @SneakyThrows(IOException.class)
+    public int export(Path target) {
+        var columns = new Columns();
+        subscriptionDao.forEach(columns::add);
+
+        var temporary = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            try (var channel = FileChannel.open(temporary, WRITE)) {
+                var output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                columns.writeTo(output);
+                output.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return columns.size;
+    }
+
+    private static class Columns {
+
+        private int[] ids = new int[INITIAL_CAPACITY];
+        private int[] userIds = new int[INITIAL_CAPACITY];
+        private int[] nameOffsets = new int[INITIAL_CAPACITY];
+        private short[] nameLengths = new short[INITIAL_CAPACITY];
+        private byte[] providers = new byte[INITIAL_CAPACITY];
+        private byte[] statuses = new byte[INITIAL_CAPACITY];
+        private long[] expirationSeconds = new long[INITIAL_CAPACITY];
+        private int[] expirationNanos = new int[INITIAL_CAPACITY];
+        private int size;
+
+        // offset in the pool in the high bits, length in the low 16 bits
+        private final Map<String, Long> namesByName = new HashMap<>();
+        private byte[] names = new byte[INITIAL_CAPACITY];
+        private int namesLength;
+
+        private void add(Subscription subscription) {
+            if (size == ids.length) {
+                grow();
+            }
+            long name = namesByName.computeIfAbsent(subscription.getName(), this::appendName);
+            ids[size] = subscription.getId();
+            userIds[size] = subscription.getUserId();
+            nameOffsets[size] = (int) (name >>> 16);
+            nameLengths[size] = (short) name;
+            providers[size] = (byte) subscription.getProvider().ordinal();
+            statuses[size] = (byte) subscription.getStatus().ordinal();
+            expirationSeconds[size] = subscription.getExpirationDate().getEpochSecond();
+            expirationNanos[size] = subscription.getExpirationDate().getNano();
+            size++;
+        }
+
+        private void writeTo(DataOutputStream output) throws IOException {
+            // user id in the high half, row number in the low half: sorts by user, then in streaming order
+            var keys = new long[size];
+            for (int row = 0; row < size; row++) {
+                keys[row] = (long) userIds[row] << 32 | row;
+            }
+            Arrays.sort(keys);
+            var userCount = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || userIds[(int) keys[i]] != userIds[(int) keys[i - 1]]) {
+                    userCount++;
+                }
+            }
+            var fileSize = HEADER_SIZE + (long) userCount * USER_ENTRY_SIZE + (long) size * RECORD_SIZE + namesLength;
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Snapshot of " + size + " subscriptions exceeds 2 GiB");
+            }
+
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(size);
+            output.writeInt(userCount);
+            output.writeInt(namesLength);
+            output.write(new byte[HEADER_SIZE - 5 * Integer.BYTES]);
+            for (int i = 0; i < size; i++) {
+                var userId = userIds[(int) keys[i]];
+                if (i == 0 || userId != userIds[(int) keys[i - 1]]) {
+                    output.writeInt(userId);
+                    output.writeInt(i);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                var row = (int) keys[i];
+                output.writeInt(ids[row]);
+                output.writeInt(userIds[row]);
+                output.writeInt(nameOffsets[row]);
+                output.writeShort(nameLengths[row]);
+                output.writeByte(providers[row]);
+                output.writeByte(statuses[row]);
+                output.writeLong(expirationSeconds[row]);
+                output.writeInt(expirationNanos[row]);
+            }
+            output.write(names, 0, namesLength);
+        }
+
+        private Long appendName(String name) {
+            var bytes = name.getBytes(UTF_8);
+            if (bytes.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Subscription name is too long: " + bytes.length + " bytes");
+            }
+            if (namesLength + bytes.length > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + bytes.length));
+            }
+            System.arraycopy(bytes, 0, names, namesLength, bytes.length);
+            var offset = namesLength;
+            namesLength += bytes.length;
+            return (long) offset << 16 | bytes.length;
+        }
+
+        private void grow() {
+            var capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            userIds = Arrays.copyOf(userIds, capacity);
+            nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+            nameLengths = Arrays.copyOf(nameLengths, capacity);
+            providers = Arrays.copyOf(providers, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            expirationSeconds = Arrays.copyOf(expirationSeconds, capacity);
+            expirationNanos = Arrays.copyOf(expirationNanos, capacity);
+        }
+    }
+}
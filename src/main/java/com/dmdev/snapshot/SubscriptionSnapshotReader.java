@@ -0,0 +1,184 @@
+package com.dmdev.snapshot;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import lombok.SneakyThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.dmdev.snapshot.SnapshotFormat.HEADER_SIZE;
+import static com.dmdev.snapshot.SnapshotFormat.MAGIC;
+import static com.dmdev.snapshot.SnapshotFormat.RECORD_EXPIRATION_NANO;
+import static com.dmdev.snapshot.SnapshotFormat.RECORD_EXPIRATION_SECOND;
+import static com.dmdev.snapshot.SnapshotFormat.RECORD_NAME_LENGTH;
+import static com.dmdev.snapshot.SnapshotFormat.RECORD_NAME_OFFSET;
+import static com.dmdev.snapshot.SnapshotFormat.RECORD_PROVIDER;
+import static com.dmdev.snapshot.SnapshotFormat.RECORD_SIZE;
+import static com.dmdev.snapshot.SnapshotFormat.RECORD_STATUS;
+import static com.dmdev.snapshot.SnapshotFormat.USER_ENTRY_SIZE;
+import static com.dmdev.snapshot.SnapshotFormat.VERSION;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Answers entitlement lookups from a memory-mapped snapshot written by {@link SubscriptionSnapshotExporter}.
+ * Lookups binary-search the user index and compare records in place, without copying them to the heap.
+ * <p>
+ * {@link #swap(Path)} maps a fresh snapshot and replaces the current one atomically: a lookup reads either
+ * the old snapshot or the new one, never a mix. The old mapping is released by the garbage collector once
+ * the last lookup using it is done, so a swap never invalidates memory that is still being read.
+ */
+public class SubscriptionSnapshotReader {
+
+    private static final byte ACTIVE = (byte) Status.ACTIVE.ordinal();
+
+    private final AtomicReference<Snapshot> current;
+
+    private SubscriptionSnapshotReader(Snapshot snapshot) {
+        this.current = new AtomicReference<>(snapshot);
+    }
+
+    public static SubscriptionSnapshotReader open(Path path) {
+        return new SubscriptionSnapshotReader(Snapshot.map(path));
+    }
+
+    /**
+     * Maps the snapshot at {@code path}, which may be the path of the current one after a new export,
+     * and makes it current.
+     */
+    public void swap(Path path) {
+        current.set(Snapshot.map(path));
+    }
+
+    /**
+     * @return whether the user had an {@link Status#ACTIVE} subscription with this name and provider
+     * when the snapshot was taken that expires after {@code now}, like {@code expiration_date > now} in SQL
+     */
+    public boolean hasActive(int userId, String name, Provider provider, Instant now) {
+        var snapshot = current.get();
+        var user = snapshot.findUser(userId);
+        if (user < 0) {
+            return false;
+        }
+        for (int record = snapshot.firstRecord(user), end = snapshot.firstRecord(user + 1); record < end; record++) {
+            var position = snapshot.recordsOffset + record * RECORD_SIZE;
+            var buffer = snapshot.buffer;
+            if (buffer.get(position + RECORD_STATUS) != ACTIVE
+                || buffer.get(position + RECORD_PROVIDER) != provider.ordinal()
+                || !expiresAfter(buffer, position, now)) {
+                continue;
+            }
+            if (snapshot.nameEquals(position, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of subscriptions in the current snapshot
+     */
+    public int size() {
+        return current.get().recordCount;
+    }
+
+    private static boolean expiresAfter(ByteBuffer buffer, int position, Instant now) {
+        var second = buffer.getLong(position + RECORD_EXPIRATION_SECOND);
+        return second > now.getEpochSecond()
+               || second == now.getEpochSecond() && buffer.getInt(position + RECORD_EXPIRATION_NANO) > now.getNano();
+    }
+
+    private static class Snapshot {
+
+        private final ByteBuffer buffer;
+        private final int recordCount;
+        private final int userCount;
+        private final int recordsOffset;
+        private final int namesOffset;
+
+        private Snapshot(ByteBuffer buffer) {
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IllegalStateException("Not a subscription snapshot");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IllegalStateException("Unsupported snapshot version " + buffer.getInt(4));
+            }
+            this.buffer = buffer;
+            this.recordCount = buffer.getInt(8);
+            this.userCount = buffer.getInt(12);
+            this.recordsOffset = HEADER_SIZE + userCount * USER_ENTRY_SIZE;
+            this.namesOffset = recordsOffset + recordCount * RECORD_SIZE;
+            if ((long) namesOffset + buffer.getInt(16) != buffer.capacity()) {
+                throw new IllegalStateException("Truncated subscription snapshot");
+            }
+        }
+
+        @SneakyThrows(IOException.class)
+        private static Snapshot map(Path path) {
+            // the mapping stays valid after the channel is closed
+            try (var channel = FileChannel.open(path, READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Snapshot exceeds 2 GiB: " + path);
+                }
+                return new Snapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        /**
+         * @return the position of the user in the user index, or a negative number if the user has no records
+         */
+        private int findUser(int userId) {
+            var low = 0;
+            var high = userCount - 1;
+            while (low <= high) {
+                var middle = (low + high) >>> 1;
+                var middleUserId = buffer.getInt(HEADER_SIZE + middle * USER_ENTRY_SIZE);
+                if (middleUserId < userId) {
+                    low = middle + 1;
+                } else if (middleUserId > userId) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        private int firstRecord(int user) {
+            return user < userCount ? buffer.getInt(HEADER_SIZE + user * USER_ENTRY_SIZE + Integer.BYTES) : recordCount;
+        }
+
+        private boolean nameEquals(int position, String name) {
+            var length = buffer.getShort(position + RECORD_NAME_LENGTH);
+            var nameOffset = namesOffset + buffer.getInt(position + RECORD_NAME_OFFSET);
+            // only an ASCII name has as many UTF-8 bytes as chars, and those compare without encoding
+            if (length == name.length()) {
+                for (int i = 0; i < length; i++) {
+                    var c = name.charAt(i);
+                    if (c >= 0x80 || buffer.get(nameOffset + i) != c) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            if (length < name.length()) {
+                return false;
+            }
+            var bytes = name.getBytes(UTF_8);
+            if (bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(nameOffset + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
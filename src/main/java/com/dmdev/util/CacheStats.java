@@ -0,0 +1,20 @@
+package com.dmdev.util;
+
+import lombok.Value;
+
+@Value(staticConstructor = "of")
+public class CacheStats {
+    long hits;
+    long misses;
+    long evictions;
+    int size;
+
+    public double hitRate() {
+        var requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    public CacheStats plus(CacheStats other) {
+        return of(hits + other.hits, misses + other.misses, evictions + other.evictions, size + other.size);
+    }
+}
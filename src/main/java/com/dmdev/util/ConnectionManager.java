@@ -1,10 +1,16 @@
 package com.dmdev.util;
 
+import com.dmdev.dao.Dialect;
+import com.dmdev.metrics.Metrics;
 import lombok.SneakyThrows;
+import lombok.Value;
 import lombok.experimental.UtilityClass;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 
 @UtilityClass
 public class ConnectionManager {
@@ -13,6 +19,29 @@ public class ConnectionManager {
     private static final String USER_KEY = "db.user";
     private static final String PASSWORD_KEY = "db.password";
     private static final String DRIVER_KEY = "db.driver";
+    private static final String POOL_MIN_SIZE_KEY = "db.pool.min-size";
+    private static final String POOL_MAX_SIZE_KEY = "db.pool.max-size";
+    private static final String POOL_BORROW_TIMEOUT_KEY = "db.pool.borrow-timeout-ms";
+    private static final String POOL_IDLE_TIMEOUT_KEY = "db.pool.idle-timeout-ms";
+    private static final String POOL_VALIDATION_TIMEOUT_KEY = "db.pool.validation-timeout-s";
+    private static final String POOL_STATEMENT_CACHE_SIZE_KEY = "db.pool.statement-cache-size";
+    private static final String REPLICA_URLS_KEY = "db.replica.urls";
+    private static final String REPLICA_STICKINESS_KEY = "db.replica.stickiness-ms";
+    private static final String REPLICA_BORROW_TIMEOUT_KEY = "db.replica.borrow-timeout-ms";
+    private static final String REPLICA_RETRY_INTERVAL_KEY = "db.replica.retry-interval-ms";
+
+    private static final int DEFAULT_POOL_MIN_SIZE = 2;
+    private static final int DEFAULT_POOL_MAX_SIZE = 10;
+    private static final long DEFAULT_POOL_BORROW_TIMEOUT_MS = 30_000;
+    private static final long DEFAULT_POOL_IDLE_TIMEOUT_MS = 600_000;
+    private static final int DEFAULT_POOL_VALIDATION_TIMEOUT_S = 5;
+    private static final int DEFAULT_POOL_STATEMENT_CACHE_SIZE = 50;
+    private static final long DEFAULT_REPLICA_STICKINESS_MS = 1_000;
+    private static final long DEFAULT_REPLICA_BORROW_TIMEOUT_MS = 50;
+    private static final long DEFAULT_REPLICA_RETRY_INTERVAL_MS = 5_000;
+
+    private static final Object lock = new Object();
+    private static volatile Pools pools;
 
     static {
         loadDriver();
@@ -23,11 +52,125 @@ public class ConnectionManager {
         Class.forName(PropertiesUtil.get(DRIVER_KEY));
     }
 
+    private static ConnectionPool createPool(String url, int minSize) {
+        return ConnectionPool.builder()
+                .url(url)
+                .user(PropertiesUtil.get(USER_KEY))
+                .password(PropertiesUtil.get(PASSWORD_KEY))
+                .minSize(minSize)
+                .maxSize(PropertiesUtil.getInt(POOL_MAX_SIZE_KEY, DEFAULT_POOL_MAX_SIZE))
+                .borrowTimeout(Duration.ofMillis(PropertiesUtil.getLong(POOL_BORROW_TIMEOUT_KEY, DEFAULT_POOL_BORROW_TIMEOUT_MS)))
+                .idleTimeout(Duration.ofMillis(PropertiesUtil.getLong(POOL_IDLE_TIMEOUT_KEY, DEFAULT_POOL_IDLE_TIMEOUT_MS)))
+                .validationTimeoutSeconds(PropertiesUtil.getInt(POOL_VALIDATION_TIMEOUT_KEY, DEFAULT_POOL_VALIDATION_TIMEOUT_S))
+                .statementCacheSize(PropertiesUtil.getInt(POOL_STATEMENT_CACHE_SIZE_KEY, DEFAULT_POOL_STATEMENT_CACHE_SIZE))
+                .metricsRegistry(Metrics.getRegistry())
+                .build();
+    }
+
+    /**
+     * Replica pools open no connections up front, so an unreachable replica does not fail the start.
+     * The router marks it down and retries it later.
+     */
+    private static ReplicaRouter createRouter(ConnectionPool primary) {
+        var replicaUrls = PropertiesUtil.get(REPLICA_URLS_KEY);
+        var replicas = replicaUrls == null
+                ? List.<ConnectionPool>of()
+                : Arrays.stream(replicaUrls.split(","))
+                        .map(String::trim)
+                        .filter(url -> !url.isEmpty())
+                        .map(url -> createPool(url, 0))
+                        .toList();
+        var stickiness = Duration.ofMillis(PropertiesUtil.getLong(REPLICA_STICKINESS_KEY, DEFAULT_REPLICA_STICKINESS_MS));
+        var borrowTimeout = Duration.ofMillis(PropertiesUtil.getLong(REPLICA_BORROW_TIMEOUT_KEY, DEFAULT_REPLICA_BORROW_TIMEOUT_MS));
+        var retryInterval = Duration.ofMillis(PropertiesUtil.getLong(REPLICA_RETRY_INTERVAL_KEY, DEFAULT_REPLICA_RETRY_INTERVAL_MS));
+        return new ReplicaRouter(primary, replicas, stickiness, borrowTimeout, retryInterval);
+    }
+
+    /**
+     * Creates the pools on first use. If that fails, for example because the database is down,
+     * the exception goes to the caller and the next call tries again.
+     */
+    private static Pools pools() {
+        var current = pools;
+        if (current == null) {
+            synchronized (lock) {
+                current = pools;
+                if (current == null) {
+                    current = createPools();
+                    pools = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Pools createPools() {
+        var primary = createPool(PropertiesUtil.get(URL_KEY), PropertiesUtil.getInt(POOL_MIN_SIZE_KEY, DEFAULT_POOL_MIN_SIZE));
+        try {
+            return Pools.of(primary, createRouter(primary));
+        } catch (RuntimeException e) {
+            primary.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Inside {@link TransactionManager#inTransaction} returns a handle to the transaction's connection,
+     * otherwise borrows a connection from the pool.
+     */
     @SneakyThrows
     public static Connection get() {
-        return DriverManager.getConnection(
-                PropertiesUtil.get(URL_KEY),
-                PropertiesUtil.get(USER_KEY),
-                PropertiesUtil.get(PASSWORD_KEY));
+        var transactionConnection = TransactionManager.currentConnection();
+        return transactionConnection != null
+                ? transactionConnection
+                : borrow();
+    }
+
+    /**
+     * For read-only work: inside {@link TransactionManager#inTransaction} returns a handle to the transaction's
+     * connection, otherwise borrows a connection from a replica chosen by {@link ReplicaRouter}.
+     * Without {@code db.replica.urls} this is the same as {@link #get()}.
+     */
+    @SneakyThrows
+    public static Connection getForRead() {
+        var transactionConnection = TransactionManager.currentConnection();
+        return transactionConnection != null
+                ? transactionConnection
+                : pools().getRouter().getForRead();
+    }
+
+    static Connection borrow() throws SQLException {
+        return pools().getRouter().getPrimary();
+    }
+
+    public static Dialect getDialect() {
+        return Dialect.fromUrl(PropertiesUtil.get(URL_KEY));
+    }
+
+    /**
+     * Statement cache counters summed over the primary and the replica pools.
+     */
+    public static CacheStats getStatementCacheStats() {
+        var current = pools();
+        return current.getPrimary().getStatementCacheStats().plus(current.getRouter().getReplicaStatementCacheStats());
+    }
+
+    /**
+     * Closes the pools, the next call creates them again.
+     */
+    public static void closePool() {
+        synchronized (lock) {
+            if (pools != null) {
+                pools.getRouter().close();
+                pools.getPrimary().close();
+                pools = null;
+            }
+        }
+    }
+
+    @Value(staticConstructor = "of")
+    private static class Pools {
+        ConnectionPool primary;
+        ReplicaRouter router;
     }
 }
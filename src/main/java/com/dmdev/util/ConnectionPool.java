@@ -0,0 +1,370 @@
+package com.dmdev.util;
+
+import com.dmdev.metrics.MetricsRegistry;
+import com.dmdev.metrics.NoopMetricsRegistry;
+import com.dmdev.metrics.Timer;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.SneakyThrows;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of physical JDBC connections.
+ * <p>
+ * At most {@code maxSize} connections are leased at the same time, at least {@code minSize} are kept open.
+ * A borrowed connection is validated before it is handed out and {@link Connection#close()} returns it
+ * to the pool instead of closing it. Connections idle for longer than {@code idleTimeout} are evicted
+ * down to {@code minSize}, and connections that were dropped as broken are replaced up to {@code minSize}.
+ * Every connection keeps up to {@code statementCacheSize} prepared statements for reuse, 0 disables the
+ * statement cache. The time to get a connection, including waiting for a free one, is recorded in the
+ * {@code connection.acquire} timer of {@code metricsRegistry}.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    @Getter
+    private final String url;
+    private final String user;
+    private final String password;
+    @Getter
+    private final int minSize;
+    @Getter
+    private final int maxSize;
+    private final Duration borrowTimeout;
+    private final Duration idleTimeout;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore leases;
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+    private final Timer acquireTimer;
+    private final ScheduledExecutorService evictor;
+
+    @Builder
+    @SneakyThrows
+    private ConnectionPool(String url,
+                           String user,
+                           String password,
+                           int minSize,
+                           int maxSize,
+                           Duration borrowTimeout,
+                           Duration idleTimeout,
+                           int validationTimeoutSeconds,
+                           int statementCacheSize,
+                           MetricsRegistry metricsRegistry) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid pool size: min %d, max %d", minSize, maxSize));
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("Invalid statement cache size: " + statementCacheSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeout = borrowTimeout;
+        this.idleTimeout = idleTimeout;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.acquireTimer = (metricsRegistry != null ? metricsRegistry : NoopMetricsRegistry.getInstance())
+                .timer("connection.acquire");
+        this.leases = new Semaphore(maxSize, true);
+
+        try {
+            for (int i = 0; i < minSize; i++) {
+                idle.add(open());
+            }
+        } catch (SQLException | RuntimeException e) {
+            discardIdle();
+            throw e;
+        }
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var period = Math.max(idleTimeout.toMillis() / 2, 1);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection borrow() throws SQLException {
+        var connection = tryBorrow(borrowTimeout);
+        if (connection == null) {
+            throw new SQLTimeoutException(String.format(
+                    "Could not get a connection within %d ms, all %d connections are in use",
+                    borrowTimeout.toMillis(), maxSize));
+        }
+        return connection;
+    }
+
+    /**
+     * Like {@link #borrow()}, but waits at most {@code timeout} for a connection to become free.
+     *
+     * @return the connection, or {@code null} if all connections stayed in use
+     * @throws SQLException if the pool is closed or a connection could not be opened
+     */
+    public Connection tryBorrow(Duration timeout) throws SQLException {
+        var startedAt = System.nanoTime();
+        try {
+            var connection = acquire(timeout);
+            if (connection != null) {
+                acquireTimer.record(System.nanoTime() - startedAt);
+            } else {
+                acquireTimer.recordError(System.nanoTime() - startedAt);
+            }
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            acquireTimer.recordError(System.nanoTime() - startedAt);
+            throw e;
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getOpenCount() {
+        return openCount.get();
+    }
+
+    public CacheStats getStatementCacheStats() {
+        return statementCounters.stats();
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            evictor.shutdownNow();
+            discardIdle();
+        }
+    }
+
+    private Connection acquire(Duration timeout) throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("Connection pool is closed");
+        }
+        if (!acquireLease(timeout)) {
+            return null;
+        }
+        try {
+            return lease(takeValid());
+        } catch (SQLException | RuntimeException e) {
+            leases.release();
+            throw e;
+        }
+    }
+
+    @SneakyThrows(InterruptedException.class)
+    private boolean acquireLease(Duration timeout) {
+        return leases.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private PooledConnection takeValid() throws SQLException {
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (isValid(connection)) {
+                return connection;
+            }
+            discard(connection);
+        }
+        return open();
+    }
+
+    private boolean isValid(PooledConnection connection) {
+        try {
+            return connection.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        var physical = DriverManager.getConnection(url, user, password);
+        try {
+            var statements = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementCounters)
+                    : null;
+            var connection = new PooledConnection(physical, statements);
+            openCount.incrementAndGet();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            physical.close();
+            throw e;
+        }
+    }
+
+    private Connection lease(PooledConnection connection) {
+        var returned = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close" -> {
+                            if (returned.compareAndSet(false, true)) {
+                                giveBack(connection);
+                            }
+                            return null;
+                        }
+                        case "prepareStatement" -> {
+                            if (connection.statements != null && !returned.get()) {
+                                var statement = connection.statements.prepare((Connection) proxy, method, args);
+                                if (statement != null) {
+                                    return statement;
+                                }
+                            }
+                            return invokePhysical(connection, method, args, returned);
+                        }
+                        case "setTransactionIsolation" -> {
+                            // remembered, so that returning the connection does not have to ask the driver
+                            connection.isolationChanged = true;
+                            return invokePhysical(connection, method, args, returned);
+                        }
+                        case "isClosed" -> {
+                            return returned.get() || connection.physical.isClosed();
+                        }
+                        case "unwrap" -> {
+                            return ((Class<?>) args[0]).isInstance(proxy)
+                                    ? proxy
+                                    : connection.physical.unwrap((Class<?>) args[0]);
+                        }
+                        default -> {
+                            return invokePhysical(connection, method, args, returned);
+                        }
+                    }
+                });
+    }
+
+    private Object invokePhysical(PooledConnection connection,
+                                  Method method,
+                                  Object[] args,
+                                  AtomicBoolean returned) throws Throwable {
+        if (returned.get()) {
+            throw new SQLException("Connection has already been returned to the pool");
+        }
+        try {
+            return method.invoke(connection.physical, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void giveBack(PooledConnection connection) {
+        try {
+            if (closed.get() || connection.physical.isClosed()) {
+                discard(connection);
+                return;
+            }
+            if (connection.statements != null) {
+                connection.statements.releaseAll();
+            }
+            reset(connection);
+            connection.lastUsedNanos = System.nanoTime();
+            idle.offerFirst(connection);
+        } catch (SQLException e) {
+            discard(connection);
+        } finally {
+            leases.release();
+        }
+    }
+
+    private void reset(PooledConnection connection) throws SQLException {
+        var physical = connection.physical;
+        if (!physical.getAutoCommit()) {
+            physical.rollback();
+            physical.setAutoCommit(true);
+        }
+        if (physical.isReadOnly()) {
+            physical.setReadOnly(false);
+        }
+        if (connection.isolationChanged) {
+            physical.setTransactionIsolation(connection.defaultIsolation);
+            connection.isolationChanged = false;
+        }
+        physical.clearWarnings();
+    }
+
+    private void evictIdle() {
+        var deadline = System.nanoTime() - idleTimeout.toNanos();
+        PooledConnection connection;
+        // LIFO borrowing keeps the oldest connections at the tail, so eviction only has to look there
+        while (openCount.get() > minSize
+               && (connection = idle.peekLast()) != null
+               && connection.lastUsedNanos < deadline) {
+            if (idle.removeLastOccurrence(connection)) {
+                discard(connection);
+            }
+        }
+        topUp();
+    }
+
+    private void topUp() {
+        while (!closed.get() && openCount.get() < minSize) {
+            PooledConnection connection;
+            try {
+                connection = open();
+            } catch (SQLException | RuntimeException e) {
+                // the database may be down, the next run tries again
+                return;
+            }
+            idle.offerFirst(connection);
+            if (closed.get() && idle.remove(connection)) {
+                discard(connection);
+            }
+        }
+    }
+
+    private void discardIdle() {
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            discard(connection);
+        }
+    }
+
+    private void discard(PooledConnection connection) {
+        openCount.decrementAndGet();
+        if (connection.statements != null) {
+            connection.statements.clear();
+        }
+        try {
+            connection.physical.close();
+        } catch (SQLException ignored) {
+            // the connection is being dropped anyway
+        }
+    }
+
+    private static class PooledConnection {
+
+        private final Connection physical;
+        private final StatementCache statements;
+        private final int defaultIsolation;
+        private volatile long lastUsedNanos = System.nanoTime();
+        private volatile boolean isolationChanged;
+
+        private PooledConnection(Connection physical, StatementCache statements) throws SQLException {
+            this.physical = physical;
+            this.statements = statements;
+            this.defaultIsolation = physical.getTransactionIsolation();
+        }
+    }
+}
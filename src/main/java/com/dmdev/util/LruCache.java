@@ -0,0 +1,145 @@
+package com.dmdev.util;
+
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded map that evicts the least recently used entry and drops entries older than the time to live.
+ * <p>
+ * An access-ordered map changes its structure on every read, so it needs a lock even for reads. To keep
+ * concurrent readers of different keys apart, the entries are split by key hash into segments with their own
+ * lock, and every segment keeps its share of {@code maxSize} in least recently used order. Caches too small
+ * to split have a single segment and evict in exact least recently used order.
+ */
+public class LruCache<K, V> {
+
+    // a segment holds at least this many entries, so that a few hot keys do not crowd out a tiny segment
+    private static final int MIN_SEGMENT_SIZE = 64;
+    // enough segments that threads rarely meet on one lock
+    private static final int MAX_SEGMENTS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4);
+
+    private final long timeToLiveNanos;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public LruCache(int maxSize, Duration timeToLive) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.timeToLiveNanos = timeToLive.toNanos();
+        var segmentCount = Math.min(Integer.highestOneBit(Math.max(maxSize / MIN_SEGMENT_SIZE, 1)), MAX_SEGMENTS);
+        this.segments = new LruCache.Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    public V get(K key) {
+        var value = segmentFor(key).get(key);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Like {@link #get}, but does not count a hit or miss, for lookups that serve writes rather than reads.
+     */
+    public V peek(K key) {
+        return segmentFor(key).get(key);
+    }
+
+    public void put(K key, V value) {
+        segmentFor(key).put(key, new Entry<>(value, System.nanoTime()));
+    }
+
+    public V invalidate(K key) {
+        return segmentFor(key).remove(key);
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public CacheStats stats() {
+        var size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return CacheStats.of(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    private Segment segmentFor(K key) {
+        var hash = key.hashCode();
+        return segments[(hash ^ hash >>> 16) & (segments.length - 1)];
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return System.nanoTime() - entry.getCreatedAtNanos() > timeToLiveNanos;
+    }
+
+    private class Segment {
+
+        private final LinkedHashMap<K, Entry<V>> entries;
+
+        private Segment(int maxSize) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    if (size() > maxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private synchronized V get(K key) {
+            var entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (isExpired(entry)) {
+                entries.remove(key);
+                evictions.increment();
+                return null;
+            }
+            return entry.getValue();
+        }
+
+        private synchronized void put(K key, Entry<V> entry) {
+            entries.put(key, entry);
+        }
+
+        private synchronized V remove(K key) {
+            var entry = entries.remove(key);
+            return entry == null ? null : entry.getValue();
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    @Value
+    private static class Entry<V> {
+        V value;
+        long createdAtNanos;
+    }
+}
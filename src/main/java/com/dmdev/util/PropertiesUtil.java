@@ -21,7 +21,20 @@ public class PropertiesUtil {
         }
     }
 
+    /**
+     * A system property with the same key overrides the value from application.properties.
+     */
     public static String get(String key) {
-        return properties.getProperty(key);
+        return System.getProperty(key, properties.getProperty(key));
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        var value = get(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        var value = get(key);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
     }
 }
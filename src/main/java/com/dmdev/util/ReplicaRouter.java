@@ -0,0 +1,152 @@
+package com.dmdev.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * Routes writes to the primary and spreads reads over the replicas round robin.
+ * <p>
+ * A thread that used the primary within the last {@code stickiness} keeps reading from the primary,
+ * so it sees its own writes despite replication lag. Stickiness is per thread: work handed to another thread,
+ * like the virtual thread per call of {@code AsyncSubscriptionService}, does not inherit it and may read
+ * from a replica that lags behind the write.
+ * <p>
+ * A replica whose pool has no free connection within {@code replicaBorrowTimeout} is skipped for this read.
+ * A replica that fails to hand out a connection, when the router is created or later, is marked down
+ * and skipped; once every {@code retryInterval} a single read probes it again. Going down and coming back
+ * are logged once each. If no replica can serve the read, it goes to the primary.
+ */
+public class ReplicaRouter implements AutoCloseable {
+
+    private static final System.Logger log = System.getLogger(ReplicaRouter.class.getName());
+
+    private final ConnectionPool primary;
+    private final List<Replica> replicas;
+    private final long stickinessNanos;
+    private final Duration replicaBorrowTimeout;
+    private final long retryIntervalNanos;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ThreadLocal<long[]> lastPrimaryUseNanos = ThreadLocal.withInitial(() -> new long[]{Long.MIN_VALUE});
+
+    public ReplicaRouter(ConnectionPool primary,
+                         List<ConnectionPool> replicas,
+                         Duration stickiness,
+                         Duration replicaBorrowTimeout,
+                         Duration retryInterval) {
+        this.primary = primary;
+        this.replicas = replicas.stream()
+                .map(Replica::new)
+                .toList();
+        this.stickinessNanos = stickiness.toNanos();
+        this.replicaBorrowTimeout = replicaBorrowTimeout;
+        this.retryIntervalNanos = retryInterval.toNanos();
+        this.replicas.forEach(this::probe);
+    }
+
+    public Connection getPrimary() throws SQLException {
+        lastPrimaryUseNanos.get()[0] = System.nanoTime();
+        return primary.borrow();
+    }
+
+    public Connection getForRead() throws SQLException {
+        if (replicas.isEmpty() || usedPrimaryRecently()) {
+            return primary.borrow();
+        }
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            var replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (replica.down.get() && !claimProbe(replica)) {
+                continue;
+            }
+            try {
+                var connection = replica.pool.tryBorrow(replicaBorrowTimeout);
+                if (connection != null) {
+                    markUp(replica);
+                    return connection;
+                }
+            } catch (SQLException e) {
+                markDown(replica, e);
+            }
+        }
+        return primary.borrow();
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    /**
+     * Statement cache counters summed over the replica pools, the primary pool is not included.
+     */
+    public CacheStats getReplicaStatementCacheStats() {
+        return replicas.stream()
+                .map(replica -> replica.pool.getStatementCacheStats())
+                .reduce(CacheStats.of(0, 0, 0, 0), CacheStats::plus);
+    }
+
+    /**
+     * Closes the replica pools, the primary pool belongs to the caller.
+     */
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    private boolean usedPrimaryRecently() {
+        var lastUse = lastPrimaryUseNanos.get()[0];
+        return lastUse != Long.MIN_VALUE && System.nanoTime() - lastUse < stickinessNanos;
+    }
+
+    /**
+     * Lets one read probe a down replica after the retry interval, the others keep skipping it.
+     */
+    private boolean claimProbe(Replica replica) {
+        var retryAt = replica.retryAtNanos.get();
+        var now = System.nanoTime();
+        return now - retryAt >= 0 && replica.retryAtNanos.compareAndSet(retryAt, now + retryIntervalNanos);
+    }
+
+    private void probe(Replica replica) {
+        try {
+            var connection = replica.pool.tryBorrow(replicaBorrowTimeout);
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            markDown(replica, e);
+        }
+    }
+
+    private void markDown(Replica replica, SQLException e) {
+        replica.retryAtNanos.set(System.nanoTime() + retryIntervalNanos);
+        if (replica.down.compareAndSet(false, true)) {
+            log.log(WARNING, String.format("Replica %s is not available, reads skip it and retry it every %d ms",
+                    replica.pool.getUrl(), Duration.ofNanos(retryIntervalNanos).toMillis()), e);
+        }
+    }
+
+    private void markUp(Replica replica) {
+        if (replica.down.compareAndSet(true, false)) {
+            log.log(INFO, "Replica {0} is available again", replica.pool.getUrl());
+        }
+    }
+
+    private static class Replica {
+
+        private final ConnectionPool pool;
+        private final AtomicBoolean down = new AtomicBoolean();
+        // while down, when the next read may probe the replica
+        private final AtomicLong retryAtNanos = new AtomicLong();
+
+        private Replica(ConnectionPool pool) {
+            this.pool = pool;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.dmdev.util;
+
+import lombok.Value;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prepared statements of one physical connection, keyed by SQL text and statement options,
+ * the least recently used one is closed when the cache is full.
+ * <p>
+ * A statement belongs to the caller until it is closed, closing it resets it and puts it back.
+ * If the same SQL is prepared again while its statement is still open, the second statement is not cached.
+ * Like the connection itself, the cache is used by one lease holder at a time and is not thread-safe.
+ */
+class StatementCache {
+
+    private final Connection physical;
+    private final int maxSize;
+    private final Counters counters;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection physical, int maxSize, Counters counters) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.counters = counters;
+    }
+
+    /**
+     * @return the statement for a {@code prepareStatement} call, or {@code null} if its variant is not cached
+     */
+    PreparedStatement prepare(Connection owner, Method method, Object[] args) throws SQLException {
+        var key = Key.of(method, args);
+        if (key == null) {
+            return null;
+        }
+        var entry = entries.get(key);
+        if (entry != null && entry.handle == null) {
+            counters.hits.incrementAndGet();
+            return checkOut(owner, entry);
+        }
+        counters.misses.incrementAndGet();
+        var statement = key.prepare(physical);
+        if (entry != null) {
+            return statement;
+        }
+        entry = new Entry(key, statement);
+        entries.put(key, entry);
+        counters.size.incrementAndGet();
+        evictEldest();
+        return checkOut(owner, entry);
+    }
+
+    /**
+     * Takes back the statements a lease holder did not close before returning the connection.
+     */
+    void releaseAll() {
+        for (Entry entry : new ArrayList<>(entries.values())) {
+            if (entry.handle != null) {
+                entry.handle.release();
+            }
+        }
+    }
+
+    void clear() {
+        counters.size.addAndGet(-entries.size());
+        entries.clear();
+    }
+
+    private PreparedStatement checkOut(Connection owner, Entry entry) {
+        entry.handle = new Handle(owner, entry);
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class[]{PreparedStatement.class},
+                entry.handle);
+    }
+
+    private void evictEldest() {
+        var iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            var eldest = iterator.next();
+            if (eldest.handle == null) {
+                iterator.remove();
+                counters.size.decrementAndGet();
+                counters.evictions.incrementAndGet();
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    private void checkIn(Entry entry) {
+        var statement = entry.statement;
+        try {
+            var resultSet = statement.getResultSet();
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            if (entry.fetchSizeChanged) {
+                statement.setFetchSize(0);
+                entry.fetchSizeChanged = false;
+            }
+            entry.handle = null;
+        } catch (SQLException e) {
+            // a statement that can not be reset is not reused
+            entries.remove(entry.key);
+            counters.size.decrementAndGet();
+            closeQuietly(statement);
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // the statement is being dropped anyway
+        }
+    }
+
+    static class Counters {
+
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicInteger size = new AtomicInteger();
+
+        CacheStats stats() {
+            return CacheStats.of(hits.get(), misses.get(), evictions.get(), size.get());
+        }
+    }
+
+    @Value(staticConstructor = "of")
+    private static class Key {
+        String sql;
+        int resultSetType;
+        int resultSetConcurrency;
+        int autoGeneratedKeys;
+
+        private static Key of(Method method, Object[] args) {
+            var sql = (String) args[0];
+            var parameterTypes = method.getParameterTypes();
+            if (args.length == 1) {
+                return of(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, Statement.NO_GENERATED_KEYS);
+            }
+            if (args.length == 2 && parameterTypes[1] == int.class) {
+                return of(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, (Integer) args[1]);
+            }
+            if (args.length == 3) {
+                return of(sql, (Integer) args[1], (Integer) args[2], Statement.NO_GENERATED_KEYS);
+            }
+            // column index or name arrays and holdability are rare enough to prepare every time
+            return null;
+        }
+
+        private PreparedStatement prepare(Connection connection) throws SQLException {
+            return autoGeneratedKeys == Statement.NO_GENERATED_KEYS
+                    ? connection.prepareStatement(sql, resultSetType, resultSetConcurrency)
+                    : connection.prepareStatement(sql, autoGeneratedKeys);
+        }
+    }
+
+    private static class Entry {
+
+        private final Key key;
+        private final PreparedStatement statement;
+        // the handle of the caller that holds the statement, null while it is in the cache
+        private Handle handle;
+        private boolean fetchSizeChanged;
+
+        private Entry(Key key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+    }
+
+    private class Handle implements InvocationHandler {
+
+        private final Connection owner;
+        private final Entry entry;
+        private boolean released;
+
+        private Handle(Connection owner, Entry entry) {
+            this.owner = owner;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    release();
+                    return null;
+                }
+                case "isClosed" -> {
+                    return released || entry.statement.isClosed();
+                }
+                case "getConnection" -> {
+                    return owner;
+                }
+                default -> {
+                    if (released) {
+                        throw new SQLException("Statement has already been closed");
+                    }
+                    if (method.getName().equals("setFetchSize")) {
+                        entry.fetchSizeChanged = true;
+                    }
+                    try {
+                        return method.invoke(entry.statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+
+        private void release() {
+            if (!released) {
+                released = true;
+                checkIn(entry);
+            }
+        }
+    }
+}
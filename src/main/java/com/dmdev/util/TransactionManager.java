@@ -0,0 +1,251 @@
+package com.dmdev.util;
+
+import lombok.SneakyThrows;
+import lombok.experimental.UtilityClass;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.lang.System.Logger.Level.ERROR;
+
+/**
+ * Runs a unit of work in one transaction on one connection.
+ * <p>
+ * Inside {@link #inTransaction} every {@link ConnectionManager#get()} on the same thread returns a handle to
+ * the transaction's connection, so DAO methods join the transaction. The connection is borrowed on first use,
+ * committed when the work returns and rolled back if it throws. A nested call joins the outer transaction.
+ * <p>
+ * DAO code behaves as it does outside a transaction: closing a handle does not release the connection, and
+ * {@code setAutoCommit(false)}, {@code commit()} and {@code rollback()} on a handle work on a savepoint,
+ * so they only affect what was done through that handle.
+ */
+@UtilityClass
+public class TransactionManager {
+
+    private static final System.Logger log = System.getLogger(TransactionManager.class.getName());
+
+    private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<>();
+
+    public static <T> T inTransaction(Supplier<T> work) {
+        return execute(null, work);
+    }
+
+    /**
+     * @param isolationLevel one of the {@code Connection.TRANSACTION_*} levels, ignored when joining an outer transaction
+     */
+    public static <T> T inTransaction(int isolationLevel, Supplier<T> work) {
+        return execute(isolationLevel, work);
+    }
+
+    public static void inTransaction(Runnable work) {
+        execute(null, asSupplier(work));
+    }
+
+    public static void inTransaction(int isolationLevel, Runnable work) {
+        execute(isolationLevel, asSupplier(work));
+    }
+
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Runs the action once the current transaction has committed, or right away outside a transaction.
+     * Actions of a rolled back transaction are dropped. An action that throws is logged, the commit stands.
+     */
+    public static void afterCommit(Runnable action) {
+        var transaction = CURRENT.get();
+        if (transaction != null) {
+            transaction.afterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * @return a handle to the connection of the current transaction, or {@code null} outside a transaction
+     */
+    static Connection currentConnection() throws SQLException {
+        var transaction = CURRENT.get();
+        return transaction != null ? transaction.handle() : null;
+    }
+
+    @SneakyThrows
+    private static <T> T execute(Integer isolationLevel, Supplier<T> work) {
+        if (CURRENT.get() != null) {
+            return work.get();
+        }
+        var transaction = new Transaction(isolationLevel);
+        CURRENT.set(transaction);
+        T result;
+        try {
+            result = work.get();
+            transaction.commit();
+        } catch (Throwable e) {
+            transaction.rollback(e);
+            throw e;
+        } finally {
+            CURRENT.remove();
+            transaction.close();
+        }
+        transaction.runAfterCommit();
+        return result;
+    }
+
+    private static Supplier<Void> asSupplier(Runnable work) {
+        return () -> {
+            work.run();
+            return null;
+        };
+    }
+
+    private static class Transaction {
+
+        private final Integer isolationLevel;
+        private final List<Runnable> afterCommit = new ArrayList<>();
+        private Connection connection;
+
+        private Transaction(Integer isolationLevel) {
+            this.isolationLevel = isolationLevel;
+        }
+
+        private Connection handle() throws SQLException {
+            if (connection == null) {
+                var borrowed = ConnectionManager.borrow();
+                try {
+                    if (isolationLevel != null) {
+                        borrowed.setTransactionIsolation(isolationLevel);
+                    }
+                    borrowed.setAutoCommit(false);
+                } catch (SQLException | RuntimeException e) {
+                    borrowed.close();
+                    throw e;
+                }
+                connection = borrowed;
+            }
+            return (Connection) Proxy.newProxyInstance(
+                    TransactionManager.class.getClassLoader(),
+                    new Class[]{Connection.class},
+                    new Handle(connection));
+        }
+
+        private void commit() throws SQLException {
+            if (connection != null) {
+                connection.commit();
+            }
+        }
+
+        private void runAfterCommit() {
+            for (Runnable action : afterCommit) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    log.log(ERROR, "After-commit action failed", e);
+                }
+            }
+        }
+
+        private void rollback(Throwable cause) {
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException e) {
+                    cause.addSuppressed(e);
+                }
+            }
+        }
+
+        private void close() throws SQLException {
+            if (connection != null) {
+                // the pool restores auto-commit and the isolation level
+                connection.close();
+            }
+        }
+    }
+
+    private static class Handle implements InvocationHandler {
+
+        private final Connection connection;
+        private Savepoint savepoint;
+        private boolean closed;
+
+        private Handle(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        // like a pooled connection returned in the middle of a transaction
+                        rollbackToSavepoint();
+                        releaseSavepoint();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || connection.isClosed();
+                }
+                case "getAutoCommit" -> {
+                    return savepoint == null;
+                }
+                case "setAutoCommit" -> {
+                    if ((Boolean) args[0]) {
+                        releaseSavepoint();
+                    } else if (savepoint == null) {
+                        savepoint = connection.setSavepoint();
+                    }
+                    return null;
+                }
+                case "commit" -> {
+                    if (savepoint != null) {
+                        releaseSavepoint();
+                        savepoint = connection.setSavepoint();
+                    }
+                    return null;
+                }
+                case "rollback" -> {
+                    if (args != null) {
+                        connection.rollback((Savepoint) args[0]);
+                    } else if (savepoint != null) {
+                        rollbackToSavepoint();
+                    }
+                    return null;
+                }
+                default -> {
+                    if (closed) {
+                        throw new SQLException("Connection handle has already been closed");
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+
+        private void rollbackToSavepoint() throws SQLException {
+            if (savepoint != null) {
+                connection.rollback(savepoint);
+            }
+        }
+
+        private void releaseSavepoint() throws SQLException {
+            if (savepoint != null) {
+                connection.releaseSavepoint(savepoint);
+                savepoint = null;
+            }
+        }
+    }
+}
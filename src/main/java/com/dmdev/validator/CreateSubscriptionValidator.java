@@ -2,17 +2,27 @@ package com.dmdev.validator;
 
 import com.dmdev.dto.CreateSubscriptionDto;
 import com.dmdev.entity.Provider;
-import lombok.NoArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 
+import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
-import static lombok.AccessLevel.PRIVATE;
-
-@NoArgsConstructor(access = PRIVATE)
 public class CreateSubscriptionValidator implements Validator<CreateSubscriptionDto> {
 
-    private static final CreateSubscriptionValidator INSTANCE = new CreateSubscriptionValidator();
+    private static final CreateSubscriptionValidator INSTANCE = new CreateSubscriptionValidator(Clock.systemUTC());
+
+    private static final Error INVALID_USER_ID = Error.of(100, "userId is invalid");
+    private static final Error INVALID_NAME = Error.of(101, "name is invalid");
+    private static final Error INVALID_PROVIDER = Error.of(102, "provider is invalid");
+    private static final Error INVALID_EXPIRATION_DATE = Error.of(103, "expirationDate is invalid");
+
+    private final Clock clock;
+
+    public CreateSubscriptionValidator(Clock clock) {
+        this.clock = clock;
+    }
 
     public static CreateSubscriptionValidator getInstance() {
         return INSTANCE;
@@ -20,19 +30,47 @@ public class CreateSubscriptionValidator implements Validator<CreateSubscription
 
     @Override
     public ValidationResult validate(CreateSubscriptionDto object) {
-        var validationResult = new ValidationResult();
+        return validate(object, Instant.now(clock));
+    }
+
+    /**
+     * Validates against {@code now} instead of reading the clock, an expiration date before it is invalid.
+     */
+    public ValidationResult validate(CreateSubscriptionDto object, Instant now) {
+        ValidationResult validationResult = null;
         if (object.getUserId() == null) {
-            validationResult.add(Error.of(100, "userId is invalid"));
+            validationResult = add(validationResult, INVALID_USER_ID);
         }
         if (StringUtils.isBlank(object.getName())) {
-            validationResult.add(Error.of(101, "name is invalid"));
+            validationResult = add(validationResult, INVALID_NAME);
         }
         if (Provider.findByNameOpt(object.getProvider()).isEmpty()) {
-            validationResult.add(Error.of(102, "provider is invalid"));
+            validationResult = add(validationResult, INVALID_PROVIDER);
         }
-        if (object.getExpirationDate() == null || object.getExpirationDate().isBefore(Instant.now())) {
-            validationResult.add(Error.of(103, "expirationDate is invalid"));
+        if (object.getExpirationDate() == null || object.getExpirationDate().isBefore(now)) {
+            validationResult = add(validationResult, INVALID_EXPIRATION_DATE);
         }
-        return validationResult;
+        return validationResult != null ? validationResult : ValidationResult.valid();
+    }
+
+    /**
+     * Validates all DTOs against one reading of the clock.
+     */
+    public List<ValidationResult> validateAll(List<CreateSubscriptionDto> objects) {
+        return validateAll(objects, Instant.now(clock));
+    }
+
+    public List<ValidationResult> validateAll(List<CreateSubscriptionDto> objects, Instant now) {
+        List<ValidationResult> validationResults = new ArrayList<>(objects.size());
+        for (CreateSubscriptionDto object : objects) {
+            validationResults.add(validate(object, now));
+        }
+        return validationResults;
+    }
+
+    private static ValidationResult add(ValidationResult validationResult, Error error) {
+        var result = validationResult != null ? validationResult : new ValidationResult();
+        result.add(error);
+        return result;
     }
 }
@@ -1,20 +1,37 @@
 package com.dmdev.validator;
 
-import lombok.Getter;
-
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Errors found by a {@link Validator}. The error list is allocated with the first error,
+ * validators return the shared {@link #valid()} result when there is none.
+ */
 public class ValidationResult {
 
-    @Getter
-    private final List<Error> errors = new ArrayList<>();
+    private static final ValidationResult VALID = new ValidationResult();
+
+    private List<Error> errors;
+
+    public static ValidationResult valid() {
+        return VALID;
+    }
 
     public void add(Error error) {
-        this.errors.add(error);
+        if (this == VALID) {
+            throw new UnsupportedOperationException("The shared valid result can not have errors");
+        }
+        if (errors == null) {
+            errors = new ArrayList<>(4);
+        }
+        errors.add(error);
+    }
+
+    public List<Error> getErrors() {
+        return errors == null ? List.of() : errors;
     }
 
     public boolean hasErrors() {
-        return !errors.isEmpty();
+        return errors != null;
     }
 }
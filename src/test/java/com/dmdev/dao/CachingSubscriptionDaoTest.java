@@ -0,0 +1,298 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.util.TransactionManager;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CachingSubscriptionDaoTest {
+    @Mock
+    private SubscriptionRepository delegate;
+    private CachingSubscriptionDao subscriptionDao;
+
+    @BeforeEach
+    void init() {
+        subscriptionDao = new CachingSubscriptionDao(delegate, 2, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void findByIdShouldReadThroughCache() {
+        var subscription = getSubscription(1, 10);
+        doReturn(Optional.of(subscription)).when(delegate).findById(1);
+
+        var firstResult = subscriptionDao.findById(1);
+        var secondResult = subscriptionDao.findById(1);
+
+        assertThat(firstResult).contains(subscription);
+        assertThat(secondResult).contains(subscription);
+        verify(delegate, times(1)).findById(1);
+        assertThat(subscriptionDao.getByIdStats().getHits()).isEqualTo(1);
+        assertThat(subscriptionDao.getByIdStats().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void cachedSubscriptionShouldNotBeAffectedByCallerChanges() {
+        doReturn(Optional.of(getSubscription(1, 10))).when(delegate).findById(1);
+        subscriptionDao.findById(1).get().setStatus(Status.CANCELED);
+
+        var actualResult = subscriptionDao.findById(1);
+
+        assertThat(actualResult.get().getStatus()).isEqualTo(Status.ACTIVE);
+    }
+
+    @Test
+    void findByIdShouldNotCacheMissingSubscription() {
+        doReturn(Optional.empty()).when(delegate).findById(1);
+
+        subscriptionDao.findById(1);
+        subscriptionDao.findById(1);
+
+        verify(delegate, times(2)).findById(1);
+    }
+
+    @Test
+    void findAllByIdsShouldLoadOnlyMissingSubscriptions() {
+        var subscription1 = getSubscription(1, 10);
+        var subscription2 = getSubscription(2, 11);
+        doReturn(Optional.of(subscription1)).when(delegate).findById(1);
+        doReturn(Map.of(2, subscription2)).when(delegate).findAllByIds(List.of(2, 3));
+        subscriptionDao.findById(1);
+
+        var actualResult = subscriptionDao.findAllByIds(List.of(1, 2, 3));
+
+        assertThat(actualResult).containsOnly(Map.entry(1, subscription1), Map.entry(2, subscription2));
+        assertThat(subscriptionDao.findById(2)).contains(subscription2);
+        verify(delegate, times(0)).findById(2);
+    }
+
+    @Test
+    void findAllByUserIdsShouldCacheUsersWithoutSubscriptions() {
+        var subscription = getSubscription(1, 10);
+        doReturn(Map.of(10, List.of(subscription))).when(delegate).findAllByUserIds(List.of(10, 11));
+
+        subscriptionDao.findAllByUserIds(List.of(10, 11));
+        var actualResult = subscriptionDao.findAllByUserIds(List.of(10, 11));
+
+        assertThat(actualResult).containsOnly(Map.entry(10, List.of(subscription)));
+        verify(delegate, times(1)).findAllByUserIds(List.of(10, 11));
+    }
+
+    @Test
+    void findByUserIdShouldReadThroughCache() {
+        var subscriptions = new ArrayList<>(List.of(getSubscription(1, 10), getSubscription(2, 10)));
+        doReturn(subscriptions).when(delegate).findByUserId(10);
+
+        subscriptionDao.findByUserId(10);
+        var actualResult = subscriptionDao.findByUserId(10);
+
+        assertThat(actualResult).isEqualTo(subscriptions);
+        verify(delegate, times(1)).findByUserId(10);
+        assertThat(subscriptionDao.getByUserIdStats().getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelShouldInvalidateSubscriptionAndItsUser() {
+        var subscription = getSubscription(1, 10);
+        doReturn(Optional.of(subscription)).when(delegate).findById(1);
+        doReturn(new ArrayList<>(List.of(subscription))).when(delegate).findByUserId(10);
+        doReturn(new ArrayList<>(List.of(getSubscription(2, 11)))).when(delegate).findByUserId(11);
+        doReturn(true).when(delegate).cancel(1);
+        subscriptionDao.findById(1);
+        subscriptionDao.findByUserId(10);
+        subscriptionDao.findByUserId(11);
+
+        subscriptionDao.cancel(1);
+        subscriptionDao.findById(1);
+        subscriptionDao.findByUserId(10);
+        subscriptionDao.findByUserId(11);
+
+        verify(delegate, times(2)).findById(1);
+        verify(delegate, times(2)).findByUserId(10);
+        verify(delegate, times(1)).findByUserId(11);
+    }
+
+    @Test
+    void cancelOfUncachedSubscriptionShouldInvalidateOnlyItsUser() {
+        doReturn(Map.of(1, getSubscription(1, 10))).when(delegate).findAllByIds(List.of(1));
+        doReturn(new ArrayList<>(List.of(getSubscription(1, 10)))).when(delegate).findByUserId(10);
+        doReturn(new ArrayList<>(List.of(getSubscription(2, 11)))).when(delegate).findByUserId(11);
+        doReturn(true).when(delegate).cancel(1);
+        subscriptionDao.findByUserId(10);
+        subscriptionDao.findByUserId(11);
+
+        subscriptionDao.cancel(1);
+        subscriptionDao.findByUserId(10);
+        subscriptionDao.findByUserId(11);
+
+        verify(delegate, times(2)).findByUserId(10);
+        verify(delegate, times(1)).findByUserId(11);
+    }
+
+    @Test
+    void readBetweenWriteAndCommitShouldNotStayCached() {
+        var subscription = getSubscription(1, 10);
+        doReturn(Optional.of(subscription)).when(delegate).findById(1);
+        doReturn(true).when(delegate).cancel(1);
+
+        TransactionManager.inTransaction(() -> {
+            subscriptionDao.cancel(1);
+            // a reader outside the transaction still sees the active row and caches it
+            var reader = new Thread(() -> subscriptionDao.findById(1));
+            reader.start();
+            join(reader);
+        });
+        subscriptionDao.findById(1);
+
+        verify(delegate, times(2)).findById(1);
+    }
+
+    @Test
+    void updateShouldInvalidateSubscriptionAndItsUser() {
+        var subscription = getSubscription(1, 10);
+        doReturn(Optional.of(subscription)).when(delegate).findById(1);
+        doReturn(new ArrayList<>(List.of(subscription))).when(delegate).findByUserId(10);
+        doReturn(subscription).when(delegate).update(subscription);
+        subscriptionDao.findById(1);
+        subscriptionDao.findByUserId(10);
+
+        subscriptionDao.update(subscription);
+        subscriptionDao.findById(1);
+        subscriptionDao.findByUserId(10);
+
+        verify(delegate, times(2)).findById(1);
+        verify(delegate, times(2)).findByUserId(10);
+    }
+
+    @Test
+    void insertShouldInvalidateUser() {
+        var subscription = getSubscription(null, 10);
+        doReturn(new ArrayList<Subscription>()).when(delegate).findByUserId(10);
+        doReturn(subscription).when(delegate).insert(subscription);
+        subscriptionDao.findByUserId(10);
+
+        subscriptionDao.insert(subscription);
+        subscriptionDao.findByUserId(10);
+
+        verify(delegate, times(2)).findByUserId(10);
+    }
+
+    @Test
+    void leastRecentlyUsedSubscriptionShouldBeEvicted() {
+        doReturn(Optional.of(getSubscription(1, 10))).when(delegate).findById(1);
+        doReturn(Optional.of(getSubscription(2, 10))).when(delegate).findById(2);
+        doReturn(Optional.of(getSubscription(3, 10))).when(delegate).findById(3);
+        subscriptionDao.findById(1);
+        subscriptionDao.findById(2);
+        subscriptionDao.findById(1);
+
+        subscriptionDao.findById(3);
+        subscriptionDao.findById(1);
+        subscriptionDao.findById(2);
+
+        verify(delegate, times(1)).findById(1);
+        verify(delegate, times(2)).findById(2);
+        assertThat(subscriptionDao.getByIdStats().getEvictions()).isEqualTo(2);
+        assertThat(subscriptionDao.getByIdStats().getSize()).isEqualTo(2);
+    }
+
+    @Test
+    void expiredEntryShouldBeReloaded() throws InterruptedException {
+        subscriptionDao = new CachingSubscriptionDao(delegate, 2, Duration.ofMillis(20));
+        doReturn(Optional.of(getSubscription(1, 10))).when(delegate).findById(1);
+        subscriptionDao.findById(1);
+
+        Thread.sleep(50);
+        subscriptionDao.findById(1);
+
+        verify(delegate, times(2)).findById(1);
+        assertThat(subscriptionDao.getByIdStats().getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    void findEntitledUsersShouldCacheAnswersAndQueryOnlyMisses() {
+        subscriptionDao = new CachingSubscriptionDao(delegate, 10, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        var now = Instant.now();
+        doReturn(bitSet(0)).when(delegate).findEntitledUsers(List.of(10, 11), "subscription1", Provider.APPLE, now);
+        doReturn(bitSet(1)).when(delegate).findEntitledUsers(List.of(12, 13), "subscription1", Provider.APPLE, now);
+
+        var firstResult = subscriptionDao.findEntitledUsers(List.of(10, 11), "subscription1", Provider.APPLE, now);
+        var secondResult = subscriptionDao.findEntitledUsers(
+                Arrays.asList(11, 12, null, 10, 13), "subscription1", Provider.APPLE, now);
+
+        assertThat(firstResult).isEqualTo(bitSet(0));
+        assertThat(secondResult).isEqualTo(bitSet(3, 4));
+        assertThat(subscriptionDao.getEntitlementStats().getHits()).isEqualTo(2);
+    }
+
+    @Test
+    void writeShouldInvalidateCachedEntitlement() {
+        subscriptionDao = new CachingSubscriptionDao(delegate, 10, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        var now = Instant.now();
+        var subscription = getSubscription(null, 10).setName("subscription1");
+        doReturn(new BitSet()).when(delegate).findEntitledUsers(List.of(10), "subscription1", Provider.APPLE, now);
+        doReturn(subscription).when(delegate).insert(subscription);
+
+        subscriptionDao.findEntitledUsers(List.of(10), "subscription1", Provider.APPLE, now);
+        subscriptionDao.insert(subscription);
+        subscriptionDao.findEntitledUsers(List.of(10), "subscription1", Provider.APPLE, now);
+
+        verify(delegate, times(2)).findEntitledUsers(List.of(10), "subscription1", Provider.APPLE, now);
+    }
+
+    @Test
+    void findEntitledUsersShouldNotCacheWithoutEntitlementTimeToLive() {
+        var now = Instant.now();
+        doReturn(bitSet(0)).when(delegate).findEntitledUsers(List.of(10), "subscription1", Provider.APPLE, now);
+
+        subscriptionDao.findEntitledUsers(List.of(10), "subscription1", Provider.APPLE, now);
+        subscriptionDao.findEntitledUsers(List.of(10), "subscription1", Provider.APPLE, now);
+
+        verify(delegate, times(2)).findEntitledUsers(List.of(10), "subscription1", Provider.APPLE, now);
+    }
+
+    @SneakyThrows(InterruptedException.class)
+    private static void join(Thread thread) {
+        thread.join();
+    }
+
+    private static BitSet bitSet(int... indexes) {
+        var bitSet = new BitSet();
+        for (int index : indexes) {
+            bitSet.set(index);
+        }
+        return bitSet;
+    }
+
+    private Subscription getSubscription(Integer id, int userId) {
+        return Subscription.builder()
+                .id(id)
+                .userId(userId)
+                .name("subscription" + id)
+                .provider(Provider.APPLE)
+                .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS))
+                .status(Status.ACTIVE)
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.feed.SubscriptionChange;
+import com.dmdev.feed.SubscriptionChange.Kind;
+import com.dmdev.feed.SubscriptionChangeFeed;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.service.SubscriptionService;
+import com.dmdev.util.TransactionManager;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChangeFeedSubscriptionDaoTest {
+
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    private final SubscriptionChangeFeed changeFeed = new SubscriptionChangeFeed(100, null);
+    private final ChangeFeedSubscriptionDao subscriptionDao =
+            new ChangeFeedSubscriptionDao(new InMemorySubscriptionDao(), changeFeed);
+
+    @Test
+    void writesShouldPublishChangesInOrder() {
+        var subscription = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        subscriptionDao.update(subscription.setStatus(Status.CANCELED));
+        subscriptionDao.cancel(subscription.getId());
+        subscriptionDao.delete(subscription.getId());
+        subscriptionDao.delete(subscription.getId());
+
+        assertThat(changeFeed.read(1, 10)).containsExactly(
+                SubscriptionChange.of(1, Kind.INSERTED, subscription.getId(), subscription.toBuilder().status(Status.ACTIVE).build()),
+                SubscriptionChange.of(2, Kind.UPDATED, subscription.getId(), subscription),
+                SubscriptionChange.of(3, Kind.DELETED, subscription.getId(), null));
+    }
+
+    @Test
+    void bulkWritesShouldPublishEveryChangedRow() {
+        var overdue = subscriptionDao.insert(getSubscription(10, "subscription1").setExpirationDate(NOW.minusSeconds(1)));
+        var active = subscriptionDao.insert(getSubscription(11, "subscription1"));
+
+        subscriptionDao.expireOverdue(NOW, 10);
+        subscriptionDao.applyAll(List.of(
+                SubscriptionMutation.upsert(getSubscription(12, "subscription1")),
+                SubscriptionMutation.cancel(active.getId()),
+                SubscriptionMutation.cancel(active.getId())));
+        var inserted = subscriptionDao.insertAll(List.of(getSubscription(13, "subscription1"), getSubscription(11, "subscription1")));
+        var upserted = subscriptionDao.findByUserId(12).get(0);
+
+        assertThat(changeFeed.read(3, 10)).extracting(SubscriptionChange::getKind, SubscriptionChange::getSubscriptionId)
+                .containsExactly(
+                        tuple(Kind.EXPIRED, overdue.getId()),
+                        tuple(Kind.UPSERTED, upserted.getId()),
+                        tuple(Kind.CANCELED, active.getId()),
+                        tuple(Kind.INSERTED, inserted.getSucceeded().get(0).getId()));
+        assertThat(changeFeed.read(4, 1).get(0).getSubscription()).isEqualTo(upserted);
+    }
+
+    @Test
+    void applyAllShouldPublishMutationsAppliedWithoutUpdateCount() {
+        var noInfoDao = new ChangeFeedSubscriptionDao(new ForwardingSubscriptionDao(new InMemorySubscriptionDao()) {
+            @Override
+            public int[] applyAll(List<SubscriptionMutation> mutations) {
+                var updateCounts = super.applyAll(mutations);
+                Arrays.fill(updateCounts, Statement.SUCCESS_NO_INFO);
+                return updateCounts;
+            }
+        }, changeFeed);
+        var upserted = getSubscription(10, "subscription1");
+
+        noInfoDao.applyAll(List.of(
+                SubscriptionMutation.upsert(upserted),
+                SubscriptionMutation.upsert(getSubscription(10, "subscription1").setProvider(Provider.GOOGLE))));
+
+        assertThat(changeFeed.read(1, 10)).containsExactly(SubscriptionChange.of(1, Kind.UPSERTED, upserted.getId(), upserted));
+    }
+
+    @Test
+    void writesInTransactionShouldBePublishedOnlyAfterCommit() {
+        var service = new SubscriptionService(subscriptionDao, CreateSubscriptionMapper.getInstance(),
+                CreateSubscriptionValidator.getInstance(), Clock.fixed(NOW, ZoneOffset.UTC));
+        var subscription = subscriptionDao.insert(getSubscription(10, "subscription1"));
+
+        assertThrows(IllegalStateException.class, () -> TransactionManager.inTransaction(() -> {
+            subscriptionDao.insert(getSubscription(11, "subscription1"));
+            throw new IllegalStateException();
+        }));
+        service.cancel(subscription.getId());
+
+        assertThat(changeFeed.read(2, 10)).containsExactly(SubscriptionChange.of(2, Kind.CANCELED, subscription.getId(), null));
+    }
+
+    private Subscription getSubscription(int userId, String name) {
+        return Subscription.builder()
+                .userId(userId)
+                .name(name)
+                .provider(Provider.APPLE)
+                .expirationDate(NOW)
+                .status(Status.ACTIVE)
+                .build();
+    }
+}
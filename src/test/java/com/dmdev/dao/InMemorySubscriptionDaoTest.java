@@ -0,0 +1,58 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemorySubscriptionDaoTest implements SubscriptionDaoContract {
+
+    private final InMemorySubscriptionDao subscriptionDao = new InMemorySubscriptionDao();
+
+    @Override
+    public SubscriptionRepository subscriptionDao() {
+        return subscriptionDao;
+    }
+
+    @Test
+    void storedSubscriptionShouldNotBeAffectedByCallerChanges() {
+        var subscription = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        subscription.setStatus(Status.CANCELED);
+        subscriptionDao.findById(subscription.getId()).get().setStatus(Status.EXPIRED);
+
+        assertThat(subscriptionDao.findById(subscription.getId()).get().getStatus()).isEqualTo(Status.ACTIVE);
+    }
+
+    @Test
+    void concurrentUpsertsOfSameNameShouldCreateOneRow() {
+        var futures = IntStream.range(0, 8)
+                .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                    for (int userId = 0; userId < 200; userId++) {
+                        subscriptionDao.upsertByUserIdAndName(getSubscription(userId, "subscription1"));
+                    }
+                }))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(futures).join();
+
+        assertThat(subscriptionDao.findAll()).hasSize(200);
+        assertThat(subscriptionDao.findByUserId(199)).hasSize(1);
+    }
+
+    private Subscription getSubscription(int userId, String name) {
+        return Subscription.builder()
+                .userId(userId)
+                .name(name)
+                .provider(Provider.APPLE)
+                .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS))
+                .status(Status.ACTIVE)
+                .build();
+    }
+}
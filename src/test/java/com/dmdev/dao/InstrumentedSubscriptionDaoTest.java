@@ -0,0 +1,53 @@
+package com.dmdev.dao;
+
+import com.dmdev.entity.Subscription;
+import com.dmdev.metrics.InMemoryMetricsRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+class InstrumentedSubscriptionDaoTest {
+
+    @Mock
+    private SubscriptionRepository delegate;
+    private InMemoryMetricsRegistry registry;
+    private InstrumentedSubscriptionDao subscriptionDao;
+
+    @BeforeEach
+    void init() {
+        registry = new InMemoryMetricsRegistry();
+        subscriptionDao = new InstrumentedSubscriptionDao(delegate, registry);
+    }
+
+    @Test
+    void findByIdShouldBeTimed() {
+        var subscription = Subscription.builder().id(1).build();
+        doReturn(Optional.of(subscription)).when(delegate).findById(1);
+
+        var actualResult = subscriptionDao.findById(1);
+
+        assertThat(actualResult).contains(subscription);
+        var snapshot = registry.snapshot().get("dao.findById");
+        assertThat(snapshot.getCount()).isEqualTo(1);
+        assertThat(snapshot.getErrorCount()).isZero();
+    }
+
+    @Test
+    void failedCallShouldBeCountedAsError() {
+        doThrow(IllegalStateException.class).when(delegate).cancel(1);
+
+        assertThrows(IllegalStateException.class, () -> subscriptionDao.cancel(1));
+
+        assertThat(registry.snapshot().get("dao.cancel").getErrorCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,262 @@
+package com.dmdev.dao;
+
+import com.dmdev.dto.SubscriptionFilter;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Behaviour every {@link SubscriptionRepository} implementation shares, run against an empty store.
+ */
+public interface SubscriptionDaoContract {
+
+    Instant NOW = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    SubscriptionRepository subscriptionDao();
+
+    @Test
+    default void insertShouldAssignIdAndFindById() {
+        var subscription = subscriptionDao().insert(getSubscription(10, "subscription1"));
+
+        assertThat(subscription.getId()).isNotNull();
+        assertThat(subscriptionDao().findById(subscription.getId())).contains(subscription);
+        assertThat(subscriptionDao().findById(subscription.getId() + 1)).isEmpty();
+    }
+
+    @Test
+    default void insertShouldRejectDuplicateUserIdAndName() {
+        subscriptionDao().insert(getSubscription(10, "subscription1"));
+
+        assertThrows(SQLException.class, () -> subscriptionDao().insert(getSubscription(10, "subscription1")));
+        assertThat(subscriptionDao().findAll()).hasSize(1);
+    }
+
+    @Test
+    default void insertShouldRejectMissingName() {
+        assertThrows(SQLException.class, () -> subscriptionDao().insert(getSubscription(10, null)));
+        assertThat(subscriptionDao().findAll()).isEmpty();
+    }
+
+    @Test
+    default void updateShouldReplaceStoredRow() {
+        var subscription = subscriptionDao().insert(getSubscription(10, "subscription1"));
+
+        subscriptionDao().update(subscription.toBuilder().userId(11).name("subscription2").status(Status.CANCELED).build());
+
+        assertThat(subscriptionDao().findById(subscription.getId())).contains(
+                subscription.toBuilder().userId(11).name("subscription2").status(Status.CANCELED).build());
+        assertThat(subscriptionDao().findByUserId(10)).isEmpty();
+        assertThat(subscriptionDao().findByUserId(11)).extracting(Subscription::getId).containsExactly(subscription.getId());
+    }
+
+    @Test
+    default void updateShouldRejectDuplicateUserIdAndName() {
+        subscriptionDao().insert(getSubscription(10, "subscription1"));
+        var subscription = subscriptionDao().insert(getSubscription(10, "subscription2"));
+
+        assertThrows(SQLException.class, () -> subscriptionDao().update(subscription.toBuilder().name("subscription1").build()));
+        assertThat(subscriptionDao().findById(subscription.getId())).contains(subscription);
+    }
+
+    @Test
+    default void deleteShouldRemoveRowOnce() {
+        var subscription = subscriptionDao().insert(getSubscription(10, "subscription1"));
+
+        assertThat(subscriptionDao().delete(subscription.getId())).isTrue();
+        assertThat(subscriptionDao().delete(subscription.getId())).isFalse();
+        assertThat(subscriptionDao().findByUserId(10)).isEmpty();
+        subscriptionDao().insert(getSubscription(10, "subscription1"));
+    }
+
+    @Test
+    default void findByUserShouldReturnOnlyUsersSubscriptions() {
+        var subscription1 = subscriptionDao().insert(getSubscription(10, "subscription1"));
+        var subscription2 = subscriptionDao().insert(getSubscription(10, "subscription2"));
+        var subscription3 = subscriptionDao().insert(getSubscription(11, "subscription1"));
+        subscriptionDao().insert(getSubscription(12, "subscription1"));
+
+        assertThat(subscriptionDao().findByUserId(10)).containsExactlyInAnyOrder(subscription1, subscription2);
+        assertThat(subscriptionDao().findAllByUserIds(List.of(11, 13, 11))).containsOnly(Map.entry(11, List.of(subscription3)));
+        assertThat(subscriptionDao().findAllByIds(List.of(subscription1.getId(), subscription3.getId(), -1)))
+                .containsOnly(Map.entry(subscription1.getId(), subscription1), Map.entry(subscription3.getId(), subscription3));
+    }
+
+    @Test
+    default void findPageShouldFilterAndOrderById() {
+        var subscription1 = subscriptionDao().insert(getSubscription(10, "subscription1"));
+        subscriptionDao().insert(getSubscription(10, "subscription2").setProvider(Provider.GOOGLE));
+        var subscription3 = subscriptionDao().insert(getSubscription(11, "subscription1"));
+        var subscription4 = subscriptionDao().insert(getSubscription(10, "subscription3").setExpirationDate(NOW.plusSeconds(60)));
+        var filter = SubscriptionFilter.builder().provider(Provider.APPLE).build();
+
+        var firstPage = subscriptionDao().findPage(filter, null, 2);
+        var lastPage = subscriptionDao().findPage(filter, firstPage.get(1).getId(), 2);
+        var userPage = subscriptionDao().findPage(
+                SubscriptionFilter.builder().userId(10).expirationFrom(NOW.plusSeconds(1)).build(), null, 10);
+
+        assertThat(firstPage).containsExactly(subscription1, subscription3);
+        assertThat(lastPage).containsExactly(subscription4);
+        assertThat(userPage).containsExactly(subscription4);
+    }
+
+    @Test
+    default void findPageAndExpireOverdueShouldRejectNonPositiveLimit() {
+        assertThrows(IllegalArgumentException.class, () -> subscriptionDao().findPage(null, 0));
+        assertThrows(IllegalArgumentException.class, () -> subscriptionDao().expireOverdue(NOW, -1));
+    }
+
+    @Test
+    default void findPageShouldNotAllocateForHugeLimit() {
+        subscriptionDao().insert(getSubscription(10, "subscription1"));
+
+        assertThat(subscriptionDao().findPage(null, Integer.MAX_VALUE)).hasSize(1);
+        assertThat(subscriptionDao().expireOverdue(NOW.plusSeconds(1), Integer.MAX_VALUE)).hasSize(1);
+    }
+
+    @Test
+    default void upsertByUserIdAndNameShouldInsertOrUpdateSameProvider() {
+        var inserted = subscriptionDao().upsertByUserIdAndName(getSubscription(10, "subscription1").setStatus(Status.CANCELED));
+        var renewed = subscriptionDao().upsertByUserIdAndName(getSubscription(10, "subscription1").setExpirationDate(NOW.plusSeconds(60)));
+        var otherProvider = subscriptionDao().upsertByUserIdAndName(getSubscription(10, "subscription1").setProvider(Provider.GOOGLE));
+
+        assertThat(inserted).isPresent();
+        assertThat(renewed).contains(inserted.get().toBuilder().expirationDate(NOW.plusSeconds(60)).status(Status.ACTIVE).build());
+        assertThat(otherProvider).isEmpty();
+        assertThat(subscriptionDao().findAll()).containsExactly(renewed.get());
+    }
+
+    @Test
+    default void upsertAllByUserIdAndNameShouldReportOtherProviderByIndex() {
+        var existing = subscriptionDao().insert(getSubscription(10, "subscription1").setStatus(Status.CANCELED));
+
+        var result = subscriptionDao().upsertAllByUserIdAndName(List.of(
+                getSubscription(10, "subscription1").setExpirationDate(NOW.plusSeconds(60)),
+                getSubscription(10, "subscription1").setProvider(Provider.GOOGLE),
+                getSubscription(11, "subscription1")));
+
+        assertThat(result.getFailures()).extracting(BatchFailure::getIndex).containsExactly(1);
+        assertThat(result.getSucceeded()).hasSize(2);
+        assertThat(result.getSucceeded().get(0)).isEqualTo(
+                existing.toBuilder().expirationDate(NOW.plusSeconds(60)).status(Status.ACTIVE).build());
+        assertThat(subscriptionDao().findAll()).containsExactlyInAnyOrderElementsOf(result.getSucceeded());
+    }
+
+    @Test
+    default void cancelAndExpireShouldOnlyChangeMatchingStatus() {
+        var subscription = subscriptionDao().insert(getSubscription(10, "subscription1"));
+
+        assertThat(subscriptionDao().cancel(subscription.getId())).isTrue();
+        assertThat(subscriptionDao().cancel(subscription.getId())).isFalse();
+        assertThat(subscriptionDao().expire(subscription.getId(), NOW.minusSeconds(1))).isTrue();
+        assertThat(subscriptionDao().expire(subscription.getId(), NOW)).isFalse();
+        assertThat(subscriptionDao().cancel(-1)).isFalse();
+        assertThat(subscriptionDao().findById(subscription.getId())).contains(
+                subscription.toBuilder().status(Status.EXPIRED).expirationDate(NOW.minusSeconds(1)).build());
+    }
+
+    @Test
+    default void expireOverdueShouldExpireLongestOverdueActiveFirst() {
+        var overdue1 = subscriptionDao().insert(getSubscription(10, "subscription1").setExpirationDate(NOW.minusSeconds(10)));
+        var overdue2 = subscriptionDao().insert(getSubscription(11, "subscription1").setExpirationDate(NOW.minusSeconds(20)));
+        var overdue3 = subscriptionDao().insert(getSubscription(12, "subscription1").setExpirationDate(NOW.minusSeconds(30)));
+        subscriptionDao().insert(getSubscription(13, "subscription1").setExpirationDate(NOW.minusSeconds(40)).setStatus(Status.CANCELED));
+        subscriptionDao().insert(getSubscription(14, "subscription1"));
+
+        assertThat(subscriptionDao().expireOverdue(NOW, 2)).containsExactlyInAnyOrder(overdue3.getId(), overdue2.getId());
+        assertThat(subscriptionDao().expireOverdue(NOW, 2)).containsExactly(overdue1.getId());
+        assertThat(subscriptionDao().expireOverdue(NOW, 2)).isEmpty();
+    }
+
+    @Test
+    default void findEntitledUsersShouldMarkActiveUnexpiredByPosition() {
+        subscriptionDao().insert(getSubscription(10, "subscription1").setExpirationDate(NOW.plusSeconds(60)));
+        subscriptionDao().insert(getSubscription(11, "subscription1").setExpirationDate(NOW.plusSeconds(60)).setStatus(Status.CANCELED));
+        subscriptionDao().insert(getSubscription(12, "subscription1"));
+        subscriptionDao().insert(getSubscription(13, "subscription1").setExpirationDate(NOW.plusSeconds(60)).setProvider(Provider.GOOGLE));
+        subscriptionDao().insert(getSubscription(14, "subscription2").setExpirationDate(NOW.plusSeconds(60)));
+        subscriptionDao().insert(getSubscription(16, "subscription1").setExpirationDate(NOW.plusSeconds(60)));
+
+        var entitled = subscriptionDao().findEntitledUsers(
+                Arrays.asList(10, 11, null, 12, 13, 14, 10, 15, 16), "subscription1", Provider.APPLE, NOW);
+
+        assertThat(entitled.stream()).containsExactly(0, 6, 8);
+        assertThat(subscriptionDao().findEntitledUsers(List.of(), "subscription1", Provider.APPLE, NOW).isEmpty()).isTrue();
+    }
+
+    @Test
+    default void applyAllShouldApplyInOrderOrNothing() {
+        var subscription = subscriptionDao().insert(getSubscription(10, "subscription1"));
+
+        var updateCounts = subscriptionDao().applyAll(List.of(
+                SubscriptionMutation.upsert(getSubscription(11, "subscription1")),
+                SubscriptionMutation.cancel(subscription.getId()),
+                SubscriptionMutation.cancel(subscription.getId())));
+
+        assertThat(updateCounts).containsExactly(1, 1, 0);
+        assertThrows(Exception.class, () -> subscriptionDao().applyAll(List.of(
+                SubscriptionMutation.expire(subscription.getId(), NOW),
+                SubscriptionMutation.upsert(getSubscription(12, "subscription1")),
+                SubscriptionMutation.upsert(getSubscription(13, null)))));
+        assertThat(subscriptionDao().findById(subscription.getId()).get().getStatus()).isEqualTo(Status.CANCELED);
+        assertThat(subscriptionDao().findByUserId(12)).isEmpty();
+    }
+
+    @Test
+    default void applyAllShouldSetIdsOfUpsertedRows() {
+        var existing = subscriptionDao().insert(getSubscription(10, "subscription1"));
+        var renewed = getSubscription(10, "subscription1").setExpirationDate(NOW.plusSeconds(60));
+        var otherProvider = getSubscription(10, "subscription1").setProvider(Provider.GOOGLE).setId(existing.getId());
+        var inserted = getSubscription(11, "subscription1");
+
+        subscriptionDao().applyAll(List.of(
+                SubscriptionMutation.upsert(renewed),
+                SubscriptionMutation.upsert(otherProvider),
+                SubscriptionMutation.upsert(inserted)));
+
+        assertThat(renewed.getId()).isEqualTo(existing.getId());
+        assertThat(otherProvider.getId()).isNull();
+        assertThat(inserted.getId()).isEqualTo(subscriptionDao().findByUserId(11).get(0).getId());
+    }
+
+    @Test
+    default void batchesShouldReportFailedRowsByIndex() {
+        var existing = subscriptionDao().insert(getSubscription(10, "subscription1"));
+
+        var inserted = subscriptionDao().insertAll(List.of(
+                getSubscription(11, "subscription1"),
+                getSubscription(10, "subscription1"),
+                getSubscription(12, "subscription1")));
+        var updated = subscriptionDao().updateAll(List.of(
+                existing.toBuilder().status(Status.CANCELED).build(),
+                getSubscription(13, "subscription1").setId(-1)));
+
+        assertThat(inserted.getSucceeded()).extracting(Subscription::getUserId).containsExactly(11, 12);
+        assertThat(inserted.getFailures()).extracting(BatchFailure::getIndex).containsExactly(1);
+        assertThat(updated.getFailures()).extracting(BatchFailure::getIndex).containsExactly(1);
+        assertThat(subscriptionDao().findById(existing.getId()).get().getStatus()).isEqualTo(Status.CANCELED);
+        try (var subscriptions = subscriptionDao().streamAll()) {
+            assertThat(subscriptions).extracting(Subscription::getUserId).containsExactlyInAnyOrder(10, 11, 12);
+        }
+    }
+
+    private static Subscription getSubscription(int userId, String name) {
+        return Subscription.builder()
+                .userId(userId)
+                .name(name)
+                .provider(Provider.APPLE)
+                .expirationDate(NOW)
+                .status(Status.ACTIVE)
+                .build();
+    }
+}
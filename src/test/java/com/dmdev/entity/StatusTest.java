@@ -0,0 +1,45 @@
+package com.dmdev.entity;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+import static com.dmdev.entity.Status.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StatusTest {
+
+    @ParameterizedTest
+    @MethodSource("getArgumentsForStatusTest")
+    void findByName(String name, Status expectedStatus) {
+        var actualResult = Status.findByName(name);
+
+        assertThat(actualResult).isEqualTo(expectedStatus);
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {
+            "PAUSED", "12345", "ACTIVE "
+    })
+    void shouldThrowExceptionIfNameIsInvalid(String name) {
+        assertThrows(NoSuchElementException.class, () -> Status.findByName(name));
+    }
+
+    static Stream<Arguments> getArgumentsForStatusTest() {
+        return Stream.of(
+                Arguments.of("ACTIVE", ACTIVE),
+                Arguments.of("active", ACTIVE),
+                Arguments.of("Canceled", CANCELED),
+                Arguments.of("CANCELED", CANCELED),
+                Arguments.of("expired", EXPIRED),
+                Arguments.of("EXPIRED", EXPIRED)
+        );
+    }
+}
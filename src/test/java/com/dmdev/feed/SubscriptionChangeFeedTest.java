@@ -0,0 +1,132 @@
+package com.dmdev.feed;
+
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.exception.SubscriptionException;
+import com.dmdev.feed.SubscriptionChange.Kind;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SubscriptionChangeFeedTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void readShouldReturnChangesFromSequenceInOrder() {
+        var changeFeed = new SubscriptionChangeFeed(8, null);
+        var subscription = getSubscription(1);
+
+        assertThat(changeFeed.publish(Kind.INSERTED, 1, subscription)).isEqualTo(1);
+        subscription.setStatus(Status.CANCELED);
+        changeFeed.publish(Kind.CANCELED, 1, null);
+        changeFeed.publish(Kind.DELETED, 1, null);
+
+        assertThat(changeFeed.read(0, 10)).containsExactly(
+                SubscriptionChange.of(1, Kind.INSERTED, 1, getSubscription(1)),
+                SubscriptionChange.of(2, Kind.CANCELED, 1, null),
+                SubscriptionChange.of(3, Kind.DELETED, 1, null));
+        assertThat(changeFeed.read(2, 1)).extracting(SubscriptionChange::getSequence).containsExactly(2L);
+        assertThat(changeFeed.read(4, 10)).isEmpty();
+        assertThat(changeFeed.getLastSequence()).isEqualTo(3);
+    }
+
+    @Test
+    void readShouldRejectChangesOverwrittenInRingWithoutLog() {
+        var changeFeed = new SubscriptionChangeFeed(4, null);
+        for (int id = 1; id <= 10; id++) {
+            changeFeed.publish(Kind.CANCELED, id, null);
+        }
+
+        assertThat(changeFeed.read(7, 10)).extracting(SubscriptionChange::getSubscriptionId).containsExactly(7, 8, 9, 10);
+        assertThrows(SubscriptionException.class, () -> changeFeed.read(6, 10));
+    }
+
+    @Test
+    void readShouldCatchUpFromLogBeyondRing() {
+        var log = directory.resolve("changes.log");
+        try (var changeFeed = new SubscriptionChangeFeed(16, log)) {
+            for (int id = 1; id <= 3000; id++) {
+                changeFeed.publish(Kind.UPDATED, id, getSubscription(id));
+            }
+
+            assertThat(changeFeed.read(1, 2)).containsExactly(
+                    SubscriptionChange.of(1, Kind.UPDATED, 1, getSubscription(1)),
+                    SubscriptionChange.of(2, Kind.UPDATED, 2, getSubscription(2)));
+            assertThat(changeFeed.read(2040, 1000)).extracting(SubscriptionChange::getSequence)
+                    .containsExactlyElementsOf(LongStream.rangeClosed(2040, 3000).boxed().toList());
+        }
+    }
+
+    @Test
+    void concurrentPublishersShouldNotOverrunWriter() throws Exception {
+        var log = directory.resolve("changes.log");
+        try (var changeFeed = new SubscriptionChangeFeed(8, log)) {
+            var publishers = IntStream.range(0, 4)
+                    .mapToObj(publisher -> CompletableFuture.runAsync(() -> {
+                        for (int i = 0; i < 2000; i++) {
+                            changeFeed.publish(Kind.CANCELED, publisher, null);
+                        }
+                    }))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(publishers).get();
+
+            List<Long> sequences = new ArrayList<>();
+            while (sequences.size() < 8000) {
+                changeFeed.read(sequences.size() + 1, 1000).forEach(change -> sequences.add(change.getSequence()));
+            }
+            assertThat(sequences).containsExactlyElementsOf(LongStream.rangeClosed(1, 8000).boxed().toList());
+            assertThat(changeFeed.isBroken()).isFalse();
+        }
+    }
+
+    @Test
+    void reopenedLogShouldContinueSequenceAndDropTornRecord() throws IOException {
+        var log = directory.resolve("changes.log");
+        try (var changeFeed = new SubscriptionChangeFeed(16, log)) {
+            changeFeed.publish(Kind.INSERTED, 1, getSubscription(1));
+            changeFeed.publish(Kind.UPSERTED, null, getSubscription(2).setId(null));
+        }
+        try (var channel = FileChannel.open(log, WRITE)) {
+            // a crash in the middle of the third record
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2}), channel.size());
+        }
+
+        try (var changeFeed = new SubscriptionChangeFeed(16, log)) {
+            assertThat(changeFeed.getLastSequence()).isEqualTo(2);
+            changeFeed.publish(Kind.EXPIRED, 1, null);
+
+            assertThat(changeFeed.read(1, 10)).containsExactly(
+                    SubscriptionChange.of(1, Kind.INSERTED, 1, getSubscription(1)),
+                    SubscriptionChange.of(2, Kind.UPSERTED, null, getSubscription(2).setId(null)),
+                    SubscriptionChange.of(3, Kind.EXPIRED, 1, null));
+        }
+    }
+
+    private Subscription getSubscription(int id) {
+        return Subscription.builder()
+                .id(id)
+                .userId(10 + id)
+                .name("подписка" + id)
+                .provider(Provider.GOOGLE)
+                .expirationDate(Instant.ofEpochSecond(1_000_000 + id, 123_000))
+                .status(Status.ACTIVE)
+                .build();
+    }
+}
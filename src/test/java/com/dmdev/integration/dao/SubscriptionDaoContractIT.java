@@ -0,0 +1,14 @@
+package com.dmdev.integration.dao;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.dao.SubscriptionDaoContract;
+import com.dmdev.dao.SubscriptionRepository;
+import com.dmdev.integration.IntegrationTestBase;
+
+class SubscriptionDaoContractIT extends IntegrationTestBase implements SubscriptionDaoContract {
+
+    @Override
+    public SubscriptionRepository subscriptionDao() {
+        return SubscriptionDao.getInstance();
+    }
+}
@@ -1,15 +1,23 @@
 package com.dmdev.integration.dao;
 
 import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.dao.SubscriptionMutation;
+import com.dmdev.dto.SubscriptionFilter;
 import com.dmdev.entity.Provider;
 import com.dmdev.entity.Status;
 import com.dmdev.entity.Subscription;
 import com.dmdev.integration.IntegrationTestBase;
 import org.junit.jupiter.api.Test;
 
+import java.sql.SQLException;
 import java.time.Clock;
+import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.*;
@@ -40,6 +48,41 @@ class SubscriptionDaoIT extends IntegrationTestBase {
 
     }
 
+    @Test
+    void streamAll() {
+        var subscription1 = subscriptionDao.insert(getSubscription(5, "subscription1"));
+        var subscription2 = subscriptionDao.insert(getSubscription(6, "subscription1"));
+        var subscription3 = subscriptionDao.insert(getSubscription(7, "subscription1"));
+
+        try (var actualResult = subscriptionDao.streamAll()) {
+            assertThat(actualResult).containsExactlyInAnyOrder(subscription1, subscription2, subscription3);
+        }
+    }
+
+    @Test
+    void streamAllShouldReleaseConnectionOnClose() {
+        subscriptionDao.insert(getSubscription(5, "subscription1"));
+        subscriptionDao.insert(getSubscription(6, "subscription1"));
+        subscriptionDao.insert(getSubscription(7, "subscription1"));
+
+        for (int i = 0; i < 20; i++) {
+            try (var subscriptions = subscriptionDao.streamAll()) {
+                assertThat(subscriptions.findFirst()).isPresent();
+            }
+        }
+    }
+
+    @Test
+    void forEach() {
+        var subscription1 = subscriptionDao.insert(getSubscription(5, "subscription1"));
+        var subscription2 = subscriptionDao.insert(getSubscription(6, "subscription1"));
+        List<Subscription> actualResult = new ArrayList<>();
+
+        subscriptionDao.forEach(actualResult::add);
+
+        assertThat(actualResult).containsExactlyInAnyOrder(subscription1, subscription2);
+    }
+
     @Test
     void findById() {
         var subscription = subscriptionDao.insert(getSubscription(10, "subscription1"));
@@ -117,6 +160,278 @@ class SubscriptionDaoIT extends IntegrationTestBase {
         assertThat(actualResult).isEmpty();
     }
 
+    @Test
+    void findAllByIds() {
+        var subscription1 = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        var subscription2 = subscriptionDao.insert(getSubscription(11, "subscription1"));
+        var subscription3 = subscriptionDao.insert(getSubscription(12, "subscription1"));
+        var subscription4 = subscriptionDao.insert(getSubscription(13, "subscription1"));
+        subscriptionDao.insert(getSubscription(14, "subscription1"));
+
+        var actualResult = subscriptionDao.findAllByIds(Arrays.asList(
+                subscription1.getId(), subscription2.getId(), subscription1.getId(), null,
+                subscription3.getId(), subscription4.getId(), -1));
+
+        assertThat(actualResult).containsOnly(
+                Map.entry(subscription1.getId(), subscription1),
+                Map.entry(subscription2.getId(), subscription2),
+                Map.entry(subscription3.getId(), subscription3),
+                Map.entry(subscription4.getId(), subscription4));
+    }
+
+    @Test
+    void findAllByUserIds() {
+        var subscription1 = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        var subscription2 = subscriptionDao.insert(getSubscription(10, "subscription2"));
+        var subscription3 = subscriptionDao.insert(getSubscription(11, "subscription1"));
+        var subscription4 = subscriptionDao.insert(getSubscription(12, "subscription1"));
+        subscriptionDao.insert(getSubscription(13, "subscription1"));
+
+        var actualResult = subscriptionDao.findAllByUserIds(List.of(10, 11, 10, 12, 14));
+
+        assertThat(actualResult).containsOnlyKeys(10, 11, 12);
+        assertThat(actualResult.get(10)).containsExactlyInAnyOrder(subscription1, subscription2);
+        assertThat(actualResult.get(11)).containsExactly(subscription3);
+        assertThat(actualResult.get(12)).containsExactly(subscription4);
+    }
+
+    @Test
+    void findAllByIdsShouldReturnEmptyMapForNoIds() {
+        assertThat(subscriptionDao.findAllByIds(List.of())).isEmpty();
+    }
+
+    @Test
+    void findPage() {
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (int userId = 1; userId <= 5; userId++) {
+            subscriptions.add(subscriptionDao.insert(getSubscription(userId, "subscription1")));
+        }
+
+        var firstPage = subscriptionDao.findPage(null, 2);
+        var secondPage = subscriptionDao.findPage(firstPage.get(1).getId(), 2);
+        var lastPage = subscriptionDao.findPage(secondPage.get(1).getId(), 2);
+
+        assertThat(firstPage).containsExactly(subscriptions.get(0), subscriptions.get(1));
+        assertThat(secondPage).containsExactly(subscriptions.get(2), subscriptions.get(3));
+        assertThat(lastPage).containsExactly(subscriptions.get(4));
+    }
+
+    @Test
+    void findPageByUserId() {
+        var subscription1 = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        subscriptionDao.insert(getSubscription(11, "subscription1"));
+        var subscription2 = subscriptionDao.insert(getSubscription(10, "subscription2"));
+        var subscription3 = subscriptionDao.insert(getSubscription(10, "subscription3"));
+
+        var firstPage = subscriptionDao.findByUserId(10, null, 2);
+        var secondPage = subscriptionDao.findByUserId(10, firstPage.get(1).getId(), 2);
+
+        assertThat(firstPage).containsExactly(subscription1, subscription2);
+        assertThat(secondPage).containsExactly(subscription3);
+    }
+
+    @Test
+    void findPageWithFilter() {
+        var active = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        subscriptionDao.insert(getSubscription(11, "subscription1").setStatus(Status.CANCELED));
+        subscriptionDao.insert(getSubscription(12, "subscription1").setProvider(Provider.GOOGLE));
+        var expiringLater = subscriptionDao.insert(getSubscription(13, "subscription1"));
+        expiringLater.setExpirationDate(expiringLater.getExpirationDate().plus(60, ChronoUnit.DAYS));
+        subscriptionDao.update(expiringLater);
+        var filter = SubscriptionFilter.builder()
+                .status(Status.ACTIVE)
+                .provider(Provider.APPLE)
+                .expirationFrom(active.getExpirationDate())
+                .expirationTo(active.getExpirationDate().plus(1, ChronoUnit.DAYS))
+                .build();
+
+        var actualResult = subscriptionDao.findPage(filter, null, 10);
+
+        assertThat(actualResult).containsExactly(active);
+    }
+
+    @Test
+    void upsertByUserIdAndNameShouldInsertNewSubscription() {
+        var subscription = getSubscription(10, "subscription1");
+
+        var actualResult = subscriptionDao.upsertByUserIdAndName(subscription);
+
+        assertThat(actualResult).isPresent();
+        assertNotNull(actualResult.get().getId());
+        assertThat(subscriptionDao.findAll()).containsExactly(actualResult.get());
+    }
+
+    @Test
+    void upsertByUserIdAndNameShouldUpdateExistingSubscription() {
+        var existing = subscriptionDao.insert(getSubscription(10, "subscription1").setStatus(Status.CANCELED));
+        var renewal = getSubscription(10, "subscription1");
+        renewal.setExpirationDate(renewal.getExpirationDate().plus(30, ChronoUnit.DAYS));
+
+        var actualResult = subscriptionDao.upsertByUserIdAndName(renewal);
+
+        assertThat(actualResult).contains(renewal.setId(existing.getId()));
+        assertThat(subscriptionDao.findAll()).containsExactly(renewal);
+    }
+
+    @Test
+    void upsertByUserIdAndNameShouldNotTouchSubscriptionOfAnotherProvider() {
+        var existing = subscriptionDao.insert(getSubscription(10, "subscription1"));
+
+        var actualResult = subscriptionDao.upsertByUserIdAndName(
+                getSubscription(10, "subscription1").setProvider(Provider.GOOGLE));
+
+        assertThat(actualResult).isEmpty();
+        assertThat(subscriptionDao.findAll()).containsExactly(existing);
+    }
+
+    @Test
+    void cancelActiveSubscription() {
+        var subscription = subscriptionDao.insert(getSubscription(10, "subscription1"));
+
+        var actualResult = subscriptionDao.cancel(subscription.getId());
+
+        assertThat(actualResult).isTrue();
+        assertThat(subscriptionDao.findById(subscription.getId()).get().getStatus()).isEqualTo(Status.CANCELED);
+    }
+
+    @Test
+    void cancelShouldNotChangeNotActiveSubscription() {
+        var subscription = subscriptionDao.insert(getSubscription(10, "subscription1").setStatus(Status.EXPIRED));
+
+        var actualResult = subscriptionDao.cancel(subscription.getId());
+
+        assertThat(actualResult).isFalse();
+        assertThat(subscriptionDao.findById(subscription.getId()).get().getStatus()).isEqualTo(Status.EXPIRED);
+    }
+
+    @Test
+    void expireNotExpiredSubscription() {
+        var subscription = subscriptionDao.insert(getSubscription(10, "subscription1").setStatus(Status.CANCELED));
+        var expirationDate = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        var actualResult = subscriptionDao.expire(subscription.getId(), expirationDate);
+
+        assertThat(actualResult).isTrue();
+        var expiredSubscription = subscriptionDao.findById(subscription.getId()).get();
+        assertThat(expiredSubscription.getStatus()).isEqualTo(Status.EXPIRED);
+        assertThat(expiredSubscription.getExpirationDate()).isEqualTo(expirationDate);
+    }
+
+    @Test
+    void expireShouldNotChangeExpiredOrNotExistingSubscription() {
+        var subscription = subscriptionDao.insert(getSubscription(10, "subscription1").setStatus(Status.EXPIRED));
+
+        assertThat(subscriptionDao.expire(subscription.getId(), Instant.now())).isFalse();
+        assertThat(subscriptionDao.expire(999, Instant.now())).isFalse();
+    }
+
+    @Test
+    void insertAll() {
+        var subscriptions = List.of(
+                getSubscription(10, "subscription1"),
+                getSubscription(10, "subscription2"),
+                getSubscription(11, "subscription1"),
+                getSubscription(12, "subscription1"),
+                getSubscription(13, "subscription1")
+        );
+
+        var actualResult = subscriptionDao.insertAll(subscriptions);
+
+        assertFalse(actualResult.hasFailures());
+        assertThat(actualResult.getSucceeded()).hasSize(5);
+        assertThat(subscriptions).allSatisfy(subscription -> assertNotNull(subscription.getId()));
+        assertThat(subscriptionDao.findAll()).containsExactlyInAnyOrderElementsOf(subscriptions);
+    }
+
+    @Test
+    void insertAllShouldReportFailedRows() {
+        subscriptionDao.insert(getSubscription(10, "subscription1"));
+        var duplicate = getSubscription(10, "subscription1");
+        var subscriptions = List.of(
+                getSubscription(11, "subscription1"),
+                duplicate,
+                getSubscription(12, "subscription1")
+        );
+
+        var actualResult = subscriptionDao.insertAll(subscriptions);
+
+        assertThat(actualResult.getSucceeded()).hasSize(2);
+        assertThat(actualResult.getFailures()).hasSize(1);
+        assertThat(actualResult.getFailures().get(0).getIndex()).isEqualTo(1);
+        assertThat(actualResult.getFailures().get(0).getEntity()).isSameAs(duplicate);
+        assertThat(subscriptionDao.findAll()).hasSize(3);
+    }
+
+    @Test
+    void updateAll() {
+        var subscription1 = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        var subscription2 = subscriptionDao.insert(getSubscription(11, "subscription1"));
+        var subscription3 = subscriptionDao.insert(getSubscription(12, "subscription1"));
+        subscription1.setStatus(Status.CANCELED);
+        subscription2.setStatus(Status.EXPIRED);
+        subscription3.setName("subscription2");
+
+        var actualResult = subscriptionDao.updateAll(List.of(subscription1, subscription2, subscription3));
+
+        assertFalse(actualResult.hasFailures());
+        assertThat(subscriptionDao.findById(subscription1.getId())).contains(subscription1);
+        assertThat(subscriptionDao.findById(subscription2.getId())).contains(subscription2);
+        assertThat(subscriptionDao.findById(subscription3.getId())).contains(subscription3);
+    }
+
+    @Test
+    void updateAllShouldReportNotExistingSubscription() {
+        var subscription = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        var notExisting = getSubscription(11, "subscription1").setId(999);
+
+        var actualResult = subscriptionDao.updateAll(List.of(subscription, notExisting));
+
+        assertThat(actualResult.getSucceeded()).containsExactly(subscription);
+        assertThat(actualResult.getFailures()).hasSize(1);
+        assertThat(actualResult.getFailures().get(0).getIndex()).isEqualTo(1);
+    }
+
+    @Test
+    void upsertAll() {
+        var existing = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        existing.setStatus(Status.CANCELED);
+        var created = getSubscription(11, "subscription1");
+
+        var actualResult = subscriptionDao.upsertAll(List.of(existing, created));
+
+        assertFalse(actualResult.hasFailures());
+        assertNotNull(created.getId());
+        assertThat(subscriptionDao.findAll()).containsExactlyInAnyOrder(existing, created);
+    }
+
+    @Test
+    void applyAll() {
+        var canceled = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        var expired = subscriptionDao.insert(getSubscription(10, "subscription2").setStatus(Status.EXPIRED));
+        var created = getSubscription(11, "subscription1");
+
+        var actualResult = subscriptionDao.applyAll(List.of(
+                SubscriptionMutation.upsert(created),
+                SubscriptionMutation.cancel(canceled.getId()),
+                SubscriptionMutation.expire(expired.getId(), Instant.now()),
+                SubscriptionMutation.upsert(getSubscription(11, "subscription1").setStatus(Status.CANCELED))));
+
+        assertThat(actualResult).containsExactly(1, 1, 0, 1);
+        assertThat(subscriptionDao.findById(canceled.getId()).get().getStatus()).isEqualTo(Status.CANCELED);
+        assertThat(subscriptionDao.findByUserId(11)).singleElement()
+                .extracting(Subscription::getStatus).isEqualTo(Status.CANCELED);
+    }
+
+    @Test
+    void applyAllShouldRollBackAllMutationsIfOneFails() {
+        var subscription = subscriptionDao.insert(getSubscription(10, "subscription1"));
+
+        assertThrows(SQLException.class, () -> subscriptionDao.applyAll(List.of(
+                SubscriptionMutation.cancel(subscription.getId()),
+                SubscriptionMutation.upsert(getSubscription(11, null)))));
+
+        assertThat(subscriptionDao.findAll()).containsExactly(subscription);
+    }
 
     private Subscription getSubscription(int userId, String subscriptionName) {
         var clock = Clock.systemDefaultZone();
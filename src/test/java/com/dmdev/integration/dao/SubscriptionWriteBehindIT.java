@@ -0,0 +1,167 @@
+package com.dmdev.integration.dao;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.dao.SubscriptionMutation;
+import com.dmdev.dao.SubscriptionWriteBehind;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.integration.IntegrationTestBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class SubscriptionWriteBehindIT extends IntegrationTestBase {
+    private final SubscriptionDao subscriptionDao = SubscriptionDao.getInstance();
+    private SubscriptionWriteBehind writeBehind;
+
+    @AfterEach
+    void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    @Test
+    void mutationsShouldBeAppliedAndCompleted() throws Exception {
+        writeBehind = new SubscriptionWriteBehind(subscriptionDao, 100, 10, Duration.ofMillis(5));
+        var canceled = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        var expired = subscriptionDao.insert(getSubscription(10, "subscription2"));
+        var expirationDate = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        var upserted = writeBehind.upsertByUserIdAndName(getSubscription(11, "subscription1"));
+        var cancelResult = writeBehind.cancel(canceled.getId());
+        var expireResult = writeBehind.expire(expired.getId(), expirationDate);
+        var notExisting = writeBehind.cancel(999);
+
+        assertThat(upserted.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(cancelResult.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(expireResult.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(notExisting.get(5, TimeUnit.SECONDS)).isFalse();
+        assertThat(subscriptionDao.findByUserId(11)).hasSize(1);
+        assertThat(subscriptionDao.findById(canceled.getId()).get().getStatus()).isEqualTo(Status.CANCELED);
+        assertThat(subscriptionDao.findById(expired.getId()).get().getExpirationDate()).isEqualTo(expirationDate);
+    }
+
+    @Test
+    void mutationsOfSameSubscriptionShouldBeCoalesced() throws Exception {
+        var dao = spy(subscriptionDao);
+        writeBehind = new SubscriptionWriteBehind(dao, 100, 10, Duration.ofMillis(200));
+        var first = getSubscription(10, "subscription1");
+        var last = getSubscription(10, "subscription1");
+        last.setExpirationDate(last.getExpirationDate().plus(30, ChronoUnit.DAYS));
+
+        var firstResult = writeBehind.upsertByUserIdAndName(first);
+        var lastResult = writeBehind.upsertByUserIdAndName(last);
+
+        assertThat(firstResult.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(lastResult.get(5, TimeUnit.SECONDS)).isTrue();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SubscriptionMutation>> mutations = ArgumentCaptor.forClass(List.class);
+        verify(dao).applyAll(mutations.capture());
+        assertThat(mutations.getValue()).containsExactly(SubscriptionMutation.upsert(last));
+        assertThat(subscriptionDao.findByUserId(10)).singleElement()
+                .extracting(Subscription::getExpirationDate).isEqualTo(last.getExpirationDate());
+    }
+
+    @Test
+    void transitionsOfSameSubscriptionShouldKeepSubmissionOrder() throws Exception {
+        writeBehind = new SubscriptionWriteBehind(subscriptionDao, 100, 10, Duration.ofMillis(200));
+        var subscription = subscriptionDao.insert(getSubscription(10, "subscription1"));
+        var expirationDate = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        var firstExpire = writeBehind.expire(subscription.getId(), expirationDate);
+        var cancel = writeBehind.cancel(subscription.getId());
+        var secondExpire = writeBehind.expire(subscription.getId(), expirationDate);
+
+        assertThat(firstExpire.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(cancel.get(5, TimeUnit.SECONDS)).isFalse();
+        assertThat(secondExpire.get(5, TimeUnit.SECONDS)).isFalse();
+        assertThat(subscriptionDao.findById(subscription.getId()).get().getStatus()).isEqualTo(Status.EXPIRED);
+    }
+
+    @Test
+    void failedMutationShouldNotFailOthers() throws Exception {
+        writeBehind = new SubscriptionWriteBehind(subscriptionDao, 100, 10, Duration.ofMillis(200));
+
+        var valid = writeBehind.upsertByUserIdAndName(getSubscription(10, "subscription1"));
+        var invalid = writeBehind.upsertByUserIdAndName(getSubscription(11, null));
+
+        assertThat(valid.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThrows(ExecutionException.class, () -> invalid.get(5, TimeUnit.SECONDS));
+        assertThat(subscriptionDao.findByUserId(10)).hasSize(1);
+    }
+
+    @Test
+    void closeShouldDrainQueue() {
+        writeBehind = new SubscriptionWriteBehind(subscriptionDao, 100, 3, Duration.ofSeconds(10));
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(writeBehind.upsertByUserIdAndName(getSubscription(i, "subscription1")));
+        }
+
+        writeBehind.close();
+
+        assertThat(results).allMatch(result -> result.isDone() && result.join());
+        assertThat(subscriptionDao.findAll()).hasSize(10);
+    }
+
+    @Test
+    void submitShouldThrowExceptionAfterClose() {
+        writeBehind = new SubscriptionWriteBehind(subscriptionDao, 100, 10, Duration.ofMillis(5));
+        writeBehind.close();
+
+        assertThrows(IllegalStateException.class, () -> writeBehind.cancel(1));
+    }
+
+    @Test
+    void submitShouldBlockWhileQueueIsFull() throws Exception {
+        var dao = spy(subscriptionDao);
+        var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return invocation.callRealMethod();
+        }).when(dao).applyAll(any());
+        writeBehind = new SubscriptionWriteBehind(dao, 1, 1, Duration.ofMillis(5));
+        writeBehind.cancel(1);
+        // the writer takes the first mutation and blocks on it, the second one fills the queue
+        Thread.sleep(100);
+        writeBehind.cancel(2);
+
+        var blocked = new Thread(() -> writeBehind.cancel(3));
+        blocked.start();
+        blocked.join(200);
+        assertThat(blocked.isAlive()).isTrue();
+
+        release.countDown();
+        blocked.join(5000);
+        assertThat(blocked.isAlive()).isFalse();
+    }
+
+    private Subscription getSubscription(int userId, String subscriptionName) {
+        return Subscription.builder()
+                .userId(userId)
+                .name(subscriptionName)
+                .provider(Provider.APPLE)
+                .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS))
+                .status(Status.ACTIVE)
+                .build();
+    }
+}
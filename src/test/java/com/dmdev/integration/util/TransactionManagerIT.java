@@ -0,0 +1,139 @@
+package com.dmdev.integration.util;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.integration.IntegrationTestBase;
+import com.dmdev.util.ConnectionManager;
+import com.dmdev.util.TransactionManager;
+import org.h2.jdbc.JdbcConnection;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionManagerIT extends IntegrationTestBase {
+    private final SubscriptionDao subscriptionDao = SubscriptionDao.getInstance();
+
+    @Test
+    void daoCallsShouldShareOneConnection() throws SQLException {
+        try (var first = ConnectionManager.get(); var second = ConnectionManager.get()) {
+            assertThat(first.unwrap(JdbcConnection.class)).isNotSameAs(second.unwrap(JdbcConnection.class));
+        }
+
+        TransactionManager.inTransaction(() -> {
+            try (var first = ConnectionManager.get(); var second = ConnectionManager.get()) {
+                assertThat(first.unwrap(JdbcConnection.class)).isSameAs(second.unwrap(JdbcConnection.class));
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void workShouldBeCommitted() {
+        var subscription = TransactionManager.inTransaction(() -> {
+            var inserted = subscriptionDao.insert(getSubscription(10, "subscription1"));
+            subscriptionDao.cancel(inserted.getId());
+            return subscriptionDao.findById(inserted.getId()).get();
+        });
+
+        assertThat(subscription.getStatus()).isEqualTo(Status.CANCELED);
+        assertThat(subscriptionDao.findAll()).containsExactly(subscription);
+    }
+
+    @Test
+    void workShouldBeRolledBackIfItThrows() {
+        assertThrows(IllegalStateException.class, () -> TransactionManager.inTransaction(() -> {
+            subscriptionDao.insert(getSubscription(10, "subscription1"));
+            throw new IllegalStateException();
+        }));
+
+        assertThat(subscriptionDao.findAll()).isEmpty();
+        assertThat(TransactionManager.isActive()).isFalse();
+    }
+
+    @Test
+    void nestedCallShouldJoinOuterTransaction() {
+        assertThrows(IllegalStateException.class, () -> TransactionManager.inTransaction(() -> {
+            TransactionManager.inTransaction(() -> subscriptionDao.insert(getSubscription(10, "subscription1")));
+            throw new IllegalStateException();
+        }));
+
+        assertThat(subscriptionDao.findAll()).isEmpty();
+    }
+
+    @Test
+    void afterCommitActionsShouldRunOnlyAfterCommit() {
+        List<String> actions = new ArrayList<>();
+
+        TransactionManager.inTransaction(() -> {
+            TransactionManager.afterCommit(() -> actions.add("committed " + subscriptionDao.findAll().size()));
+            TransactionManager.afterCommit(() -> {
+                throw new IllegalStateException();
+            });
+            subscriptionDao.insert(getSubscription(10, "subscription1"));
+            assertThat(actions).isEmpty();
+        });
+        assertThrows(IllegalStateException.class, () -> TransactionManager.inTransaction(() -> {
+            TransactionManager.afterCommit(() -> actions.add("rolled back"));
+            throw new IllegalStateException();
+        }));
+        TransactionManager.afterCommit(() -> actions.add("no transaction"));
+
+        assertThat(actions).containsExactly("committed 1", "no transaction");
+    }
+
+    @Test
+    void failedBatchRowShouldNotRollBackRestOfTransaction() {
+        var result = TransactionManager.inTransaction(() -> {
+            subscriptionDao.insert(getSubscription(10, "subscription1"));
+            return subscriptionDao.insertAll(List.of(
+                    getSubscription(11, "subscription1"),
+                    getSubscription(11, "subscription1"),
+                    getSubscription(12, "subscription1")));
+        });
+
+        assertThat(result.getFailures()).hasSize(1);
+        assertThat(subscriptionDao.findAll()).extracting(Subscription::getUserId).containsExactlyInAnyOrder(10, 11, 12);
+    }
+
+    @Test
+    void isolationLevelShouldBeAppliedAndReset() throws SQLException {
+        int defaultIsolation;
+        try (var connection = ConnectionManager.get()) {
+            defaultIsolation = connection.getTransactionIsolation();
+        }
+
+        var isolation = TransactionManager.inTransaction(Connection.TRANSACTION_SERIALIZABLE, () -> {
+            try (var connection = ConnectionManager.get()) {
+                return connection.getTransactionIsolation();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(isolation).isEqualTo(Connection.TRANSACTION_SERIALIZABLE);
+        try (var connection = ConnectionManager.get()) {
+            assertThat(connection.getTransactionIsolation()).isEqualTo(defaultIsolation);
+        }
+    }
+
+    private Subscription getSubscription(int userId, String subscriptionName) {
+        return Subscription.builder()
+                .userId(userId)
+                .name(subscriptionName)
+                .provider(Provider.APPLE)
+                .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS))
+                .status(Status.ACTIVE)
+                .build();
+    }
+}
@@ -0,0 +1,46 @@
+package com.dmdev.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InMemoryMetricsRegistryTest {
+
+    private final InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+
+    @Test
+    void timerShouldBeSharedByName() {
+        assertThat(registry.timer("dao.findById")).isSameAs(registry.timer("dao.findById"));
+    }
+
+    @Test
+    void timeShouldRecordSuccessAndError() {
+        var timer = registry.timer("service.cancel");
+
+        assertThat(timer.time(() -> 42)).isEqualTo(42);
+        assertThrows(IllegalStateException.class, () -> timer.time(() -> {
+            throw new IllegalStateException();
+        }));
+
+        var actualResult = registry.snapshot().get("service.cancel");
+        assertThat(actualResult.getCount()).isEqualTo(2);
+        assertThat(actualResult.getErrorCount()).isEqualTo(1);
+    }
+
+    @Test
+    void snapshotShouldContainEveryTimer() {
+        registry.timer("b").record(1);
+        registry.timer("a").record(1);
+
+        assertThat(registry.snapshot()).containsOnlyKeys("a", "b");
+    }
+
+    @Test
+    void noopRegistryShouldRecordNothing() {
+        var noop = NoopMetricsRegistry.getInstance();
+
+        assertThat(noop.timer("dao.findById").time(() -> 42)).isEqualTo(42);
+        assertThat(noop.snapshot()).isEmpty();
+    }
+}
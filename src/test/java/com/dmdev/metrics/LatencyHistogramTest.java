@@ -0,0 +1,59 @@
+package com.dmdev.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyHistogramTest {
+
+    @Test
+    void everyValueShouldFallIntoBucketThatCoversIt() {
+        var previousIndex = 0;
+        for (long value = 0; value < 1 << 20; value++) {
+            var index = LatencyHistogram.indexOf(value);
+
+            assertThat(index).isBetween(previousIndex, previousIndex + 1);
+            assertThat(LatencyHistogram.upperBoundOf(index)).isGreaterThanOrEqualTo(value);
+            assertThat(LatencyHistogram.upperBoundOf(index) - value).isLessThanOrEqualTo(value / 64);
+            previousIndex = index;
+        }
+    }
+
+    @Test
+    void hugeValueShouldFallIntoLastBucket() {
+        var histogram = new LatencyHistogram();
+
+        histogram.record(Long.MAX_VALUE);
+
+        assertThat(histogram.snapshot().getMaxNanos()).isEqualTo(Long.MAX_VALUE);
+        assertThat(histogram.snapshot().getP50Nanos()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void snapshotShouldContainPercentiles() {
+        var histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.recordError(2_000_000);
+
+        var actualResult = histogram.snapshot();
+
+        assertThat(actualResult.getCount()).isEqualTo(1001);
+        assertThat(actualResult.getErrorCount()).isEqualTo(1);
+        assertThat(actualResult.getMeanNanos()).isEqualTo((500_500_000L + 2_000_000) / 1001);
+        assertThat(actualResult.getP50Nanos()).isBetween(501_000L, 509_000L);
+        assertThat(actualResult.getP90Nanos()).isBetween(901_000L, 916_000L);
+        assertThat(actualResult.getP99Nanos()).isBetween(991_000L, 1_007_000L);
+        assertThat(actualResult.getMaxNanos()).isEqualTo(2_000_000);
+    }
+
+    @Test
+    void emptySnapshotShouldBeZero() {
+        var actualResult = new LatencyHistogram().snapshot();
+
+        assertThat(actualResult.getCount()).isZero();
+        assertThat(actualResult.getMeanNanos()).isZero();
+        assertThat(actualResult.getP99Nanos()).isZero();
+    }
+}
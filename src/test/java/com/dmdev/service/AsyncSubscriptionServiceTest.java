@@ -0,0 +1,105 @@
+package com.dmdev.service;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.exception.SubscriptionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncSubscriptionServiceTest {
+
+    @Mock
+    private SubscriptionService subscriptionService;
+    private AsyncSubscriptionService asyncSubscriptionService;
+
+    @AfterEach
+    void close() {
+        if (asyncSubscriptionService != null) {
+            asyncSubscriptionService.close();
+        }
+    }
+
+    @Test
+    void upsertShouldCompleteWithSubscription() throws Exception {
+        asyncSubscriptionService = new AsyncSubscriptionService(subscriptionService, 2);
+        var dto = CreateSubscriptionDto.builder().userId(1).name("name").provider("APPLE").build();
+        var subscription = Subscription.builder().id(1).userId(1).name("name").build();
+        doReturn(subscription).when(subscriptionService).upsert(dto);
+
+        var actualResult = asyncSubscriptionService.upsert(dto).get(1, TimeUnit.SECONDS);
+
+        assertThat(actualResult).isEqualTo(subscription);
+    }
+
+    @Test
+    void cancelShouldCompleteExceptionallyIfServiceThrows() {
+        asyncSubscriptionService = new AsyncSubscriptionService(subscriptionService, 2);
+        doThrow(SubscriptionException.class).when(subscriptionService).cancel(1);
+
+        var exception = assertThrows(ExecutionException.class,
+                () -> asyncSubscriptionService.cancel(1).get(1, TimeUnit.SECONDS));
+
+        assertThat(exception).hasCauseInstanceOf(SubscriptionException.class);
+    }
+
+    @Test
+    void expireShouldCallService() throws Exception {
+        asyncSubscriptionService = new AsyncSubscriptionService(subscriptionService, 2);
+
+        asyncSubscriptionService.expire(1).get(1, TimeUnit.SECONDS);
+
+        verify(subscriptionService).expire(1);
+    }
+
+    @Test
+    void callsInFlightShouldNotExceedLimit() throws Exception {
+        asyncSubscriptionService = new AsyncSubscriptionService(subscriptionService, 3);
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var limitReached = new CountDownLatch(3);
+        var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            limitReached.countDown();
+            release.await();
+            running.decrementAndGet();
+            return null;
+        }).when(subscriptionService).upsert(any());
+
+        var futures = new ArrayList<CompletableFuture<Subscription>>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(asyncSubscriptionService.upsert(CreateSubscriptionDto.builder().userId(i).build()));
+        }
+        assertThat(limitReached.await(1, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+        assertThat(running.get()).isEqualTo(3);
+
+        release.countDown();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertThat(maxRunning.get()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldThrowExceptionIfLimitIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncSubscriptionService(subscriptionService, 0));
+    }
+}
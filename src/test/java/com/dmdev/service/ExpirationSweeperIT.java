@@ -0,0 +1,99 @@
+package com.dmdev.service;
+
+import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import com.dmdev.integration.IntegrationTestBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExpirationSweeperIT extends IntegrationTestBase {
+    private static final Instant NOW = Instant.parse("2030-01-01T00:00:00Z");
+
+    private SubscriptionDao subscriptionDao;
+    private ExpirationSweeper expirationSweeper;
+
+    @BeforeEach
+    void init() {
+        subscriptionDao = SubscriptionDao.getInstance();
+        expirationSweeper = new ExpirationSweeper(subscriptionDao, Clock.fixed(NOW, ZoneOffset.UTC), 2);
+    }
+
+    @AfterEach
+    void stop() {
+        expirationSweeper.close();
+    }
+
+    @Test
+    void sweep() {
+        var overdue1 = subscriptionDao.insert(getSubscription(1, NOW.minus(1, ChronoUnit.DAYS), Status.ACTIVE));
+        var overdue2 = subscriptionDao.insert(getSubscription(2, NOW.minus(2, ChronoUnit.DAYS), Status.ACTIVE));
+        var overdue3 = subscriptionDao.insert(getSubscription(3, NOW.minus(3, ChronoUnit.DAYS), Status.ACTIVE));
+        var notDue = subscriptionDao.insert(getSubscription(4, NOW.plus(1, ChronoUnit.DAYS), Status.ACTIVE));
+        var canceled = subscriptionDao.insert(getSubscription(5, NOW.minus(1, ChronoUnit.DAYS), Status.CANCELED));
+
+        var actualResult = expirationSweeper.sweep();
+
+        assertThat(actualResult.getExpiredCount()).isEqualTo(3);
+        assertThat(actualResult.getDuration()).isPositive();
+        assertThat(expirationSweeper.getLastResult()).isEqualTo(actualResult);
+        assertThat(subscriptionDao.findById(overdue1.getId()).get().getStatus()).isEqualTo(Status.EXPIRED);
+        assertThat(subscriptionDao.findById(overdue2.getId()).get().getStatus()).isEqualTo(Status.EXPIRED);
+        assertThat(subscriptionDao.findById(overdue3.getId()).get().getStatus()).isEqualTo(Status.EXPIRED);
+        assertThat(subscriptionDao.findById(notDue.getId()).get().getStatus()).isEqualTo(Status.ACTIVE);
+        assertThat(subscriptionDao.findById(canceled.getId()).get().getStatus()).isEqualTo(Status.CANCELED);
+    }
+
+    @Test
+    void sweepShouldDoNothingIfNothingIsOverdue() {
+        subscriptionDao.insert(getSubscription(1, NOW.plus(1, ChronoUnit.DAYS), Status.ACTIVE));
+
+        var actualResult = expirationSweeper.sweep();
+
+        assertThat(actualResult.getExpiredCount()).isZero();
+    }
+
+    @Test
+    void startShouldSweepPeriodically() throws InterruptedException {
+        subscriptionDao.insert(getSubscription(1, NOW.minus(1, ChronoUnit.DAYS), Status.ACTIVE));
+        var results = new ArrayBlockingQueue<SweepResult>(16);
+
+        expirationSweeper.start(Duration.ofMillis(10), results::offer);
+
+        assertThat(results.poll(5, TimeUnit.SECONDS).getExpiredCount()).isEqualTo(1);
+        assertThat(results.poll(5, TimeUnit.SECONDS).getExpiredCount()).isZero();
+    }
+
+    @Test
+    void startShouldThrowExceptionIfAlreadyStarted() {
+        expirationSweeper.start(Duration.ofMinutes(1), result -> {
+        });
+
+        assertThrows(IllegalStateException.class,
+                () -> expirationSweeper.start(Duration.ofMinutes(1), result -> {
+                }));
+    }
+
+    private Subscription getSubscription(int userId, Instant expirationDate, Status status) {
+        return Subscription.builder()
+                .userId(userId)
+                .name("subscription1")
+                .provider(Provider.APPLE)
+                .expirationDate(expirationDate)
+                .status(status)
+                .build();
+    }
+}
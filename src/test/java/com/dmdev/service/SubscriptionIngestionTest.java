@@ -0,0 +1,106 @@
+package com.dmdev.service;
+
+import com.dmdev.dto.CreateSubscriptionDto;
+import com.dmdev.entity.Subscription;
+import com.dmdev.mapper.CreateSubscriptionMapper;
+import com.dmdev.validator.CreateSubscriptionValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SubscriptionIngestionTest {
+
+    private final CreateSubscriptionMapper createSubscriptionMapper = CreateSubscriptionMapper.getInstance();
+    private final SubscriptionIngestion ingestion = new SubscriptionIngestion(
+            CreateSubscriptionValidator.getInstance(), createSubscriptionMapper, Clock.systemUTC(), 4, 100);
+
+    @AfterEach
+    void close() {
+        ingestion.close();
+    }
+
+    @Test
+    void ingestShouldKeepInputOrderAcrossWindows() {
+        var dtos = IntStream.range(0, 1050).mapToObj(this::getDto).toList();
+        List<IngestionBatch> batches = new ArrayList<>();
+
+        ingestion.ingest(dtos, batches::add);
+
+        assertThat(batches).hasSize(11);
+        assertThat(batches).extracting(IngestionBatch::getFirstIndex)
+                .containsExactly(0L, 100L, 200L, 300L, 400L, 500L, 600L, 700L, 800L, 900L, 1000L);
+        assertThat(batches.get(10).getSize()).isEqualTo(50);
+        assertThat(batches.stream().flatMap(batch -> batch.getSubscriptions().stream()))
+                .containsExactlyElementsOf(dtos.stream().map(createSubscriptionMapper::map).toList());
+    }
+
+    @Test
+    void ingestShouldReportInvalidDtosByInputIndex() {
+        var dtos = IntStream.range(0, 300)
+                .mapToObj(i -> i % 100 == 7 ? getDto(i, "unknown") : getDto(i))
+                .toList();
+        List<IngestionBatch> batches = new ArrayList<>();
+
+        ingestion.ingest(dtos.stream(), batches::add);
+
+        var failures = batches.stream().flatMap(batch -> batch.getFailures().stream()).toList();
+        assertThat(failures).extracting(IngestionFailure::getIndex).containsExactly(7L, 107L, 207L);
+        assertThat(failures.get(0).getErrors()).extracting(error -> error.getCode()).containsExactly(102);
+        assertThat(batches.stream().mapToInt(batch -> batch.getSubscriptions().size()).sum()).isEqualTo(297);
+        assertThat(batches.get(0).getSubscriptions()).extracting(Subscription::getUserId).doesNotContain(7);
+    }
+
+    @Test
+    void ingestShouldReadUnboundedInputWindowByWindow() {
+        var read = new AtomicInteger();
+        var dtos = Stream.iterate(0, i -> i + 1)
+                .peek(i -> read.incrementAndGet())
+                .map(this::getDto);
+        List<Integer> readWhenDelivered = new ArrayList<>();
+
+        assertThrows(StopException.class, () -> ingestion.ingest(dtos, batch -> {
+            readWhenDelivered.add(read.get());
+            if (readWhenDelivered.size() == 3) {
+                throw new StopException();
+            }
+        }));
+
+        assertThat(readWhenDelivered).containsExactly(200, 300, 400);
+    }
+
+    @Test
+    void ingestShouldNotCallSinkForEmptyInput() {
+        List<IngestionBatch> batches = new ArrayList<>();
+
+        ingestion.ingest(List.of(), batches::add);
+
+        assertThat(batches).isEmpty();
+    }
+
+    private CreateSubscriptionDto getDto(int userId) {
+        return getDto(userId, "APPLE");
+    }
+
+    private CreateSubscriptionDto getDto(int userId, String provider) {
+        return CreateSubscriptionDto.builder()
+                .userId(userId)
+                .name("subscription" + userId)
+                .provider(provider)
+                .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS))
+                .build();
+    }
+
+    private static class StopException extends RuntimeException {
+    }
+}
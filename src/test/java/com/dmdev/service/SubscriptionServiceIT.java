@@ -9,6 +9,7 @@ import com.dmdev.exception.SubscriptionException;
 import com.dmdev.integration.IntegrationTestBase;
 import com.dmdev.mapper.CreateSubscriptionMapper;
 import com.dmdev.validator.CreateSubscriptionValidator;
+import com.dmdev.validator.Error;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,8 +18,11 @@ import java.time.Clock;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -52,6 +56,32 @@ public class SubscriptionServiceIT extends IntegrationTestBase {
 //        assertThat(actualResult).isEqualTo(subscription);
     }
 
+    @Test
+    void upsertShouldRenewExistingSubscription() {
+        var subscription = subscriptionService.upsert(getSubscriptionDto());
+        subscriptionService.cancel(subscription.getId());
+        var renewalDto = getSubscriptionDto();
+
+        var actualResult = subscriptionService.upsert(renewalDto);
+
+        assertThat(actualResult.getId()).isEqualTo(subscription.getId());
+        assertThat(actualResult.getStatus()).isEqualTo(Status.ACTIVE);
+        assertThat(subscriptionDao.findAll()).containsExactly(actualResult);
+    }
+
+    @Test
+    void upsertShouldThrowExceptionIfSubscriptionBelongsToAnotherProvider() {
+        subscriptionService.upsert(getSubscriptionDto());
+        var otherProviderDto = CreateSubscriptionDto.builder()
+                .userId(666)
+                .name("subscription1")
+                .expirationDate(Instant.now(clock).plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS))
+                .provider(Provider.APPLE.toString())
+                .build();
+
+        assertThrows(SubscriptionException.class, () -> subscriptionService.upsert(otherProviderDto));
+    }
+
     @Test
     void cancel() {
         var subscriptionDto = getSubscriptionDto();
@@ -97,6 +127,130 @@ public class SubscriptionServiceIT extends IntegrationTestBase {
         assertThrows(SubscriptionException.class, () -> subscriptionService.expire(subscription.getId()));
     }
 
+    @Test
+    void upsertAll() {
+        var existing = subscriptionService.upsert(getSubscriptionDto(1, "subscription1"));
+        subscriptionService.cancel(existing.getId());
+        var renewed = getSubscriptionDto(1, "subscription1");
+        var created = getSubscriptionDto(2, "subscription1");
+
+        var actualResult = subscriptionService.upsertAll(List.of(renewed, created));
+
+        assertThat(actualResult).hasSize(2);
+        assertThat(actualResult).noneMatch(UpsertResult::hasErrors);
+        assertThat(actualResult.get(0).getSubscription().getId()).isEqualTo(existing.getId());
+        assertThat(actualResult.get(1).getSubscription().getId()).isNotNull();
+        assertThat(subscriptionDao.findById(existing.getId()).get().getStatus()).isEqualTo(Status.ACTIVE);
+        assertThat(subscriptionDao.findAll()).hasSize(2);
+    }
+
+    @Test
+    void upsertAllShouldReportInvalidDtoByIndex() {
+        var invalid = getSubscriptionDto(null, "subscription1");
+        var valid = getSubscriptionDto(3, "subscription1");
+
+        var actualResult = subscriptionService.upsertAll(List.of(invalid, valid));
+
+        assertThat(actualResult.get(0).getIndex()).isZero();
+        assertThat(actualResult.get(0).getErrors()).extracting(Error::getCode).containsExactly(100);
+        assertThat(actualResult.get(1).hasErrors()).isFalse();
+        assertThat(subscriptionDao.findAll()).hasSize(1);
+    }
+
+    @Test
+    void upsertAllShouldMergeDuplicateDtos() {
+        var first = getSubscriptionDto(4, "subscription1");
+        var second = getSubscriptionDto(4, "subscription1");
+
+        var actualResult = subscriptionService.upsertAll(List.of(first, second));
+
+        assertThat(actualResult).noneMatch(UpsertResult::hasErrors);
+        assertThat(actualResult.get(0).getSubscription()).isSameAs(actualResult.get(1).getSubscription());
+        assertThat(subscriptionDao.findAll()).hasSize(1);
+    }
+
+    @Test
+    void upsertAllShouldReportResultsAcrossChunksByIndex() {
+        var dtos = List.of(
+                getSubscriptionDto(6, "subscription1"),
+                getSubscriptionDto(7, "subscription1"),
+                getSubscriptionDto(null, "subscription1"),
+                getSubscriptionDto(8, "subscription1"),
+                getSubscriptionDto(6, "subscription1"),
+                getSubscriptionDto(null, "subscription1"),
+                getSubscriptionDto(9, "subscription1"));
+
+        var actualResult = subscriptionService.upsertAll(dtos);
+
+        assertThat(actualResult).extracting(UpsertResult::getIndex).containsExactly(0, 1, 2, 3, 4, 5, 6);
+        assertThat(actualResult).extracting(UpsertResult::hasErrors).containsExactly(false, false, true, false, false, true, false);
+        // the later chunk finds the row the earlier one committed
+        assertThat(actualResult.get(4).getSubscription().getId()).isEqualTo(actualResult.get(0).getSubscription().getId());
+        assertThat(subscriptionDao.findAll()).hasSize(4);
+    }
+
+    @Test
+    void upsertAllShouldReportSubscriptionThatCouldNotBeSaved() {
+        subscriptionService.upsert(getSubscriptionDto(5, "subscription1"));
+        var otherProvider = CreateSubscriptionDto.builder()
+                .userId(5)
+                .name("subscription1")
+                .expirationDate(Instant.now(clock).plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS))
+                .provider(Provider.APPLE.toString())
+                .build();
+
+        var actualResult = subscriptionService.upsertAll(List.of(otherProvider));
+
+        assertThat(actualResult.get(0).getErrors()).extracting(Error::getCode).containsExactly(104);
+    }
+
+    @Test
+    void concurrentUpsertAllShouldNotBothWinForDifferentProviders() throws Exception {
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int userId = 100; userId < 150; userId++) {
+                var google = getSubscriptionDto(userId, "subscription1", Provider.GOOGLE);
+                var apple = getSubscriptionDto(userId, "subscription1", Provider.APPLE);
+                var start = new CountDownLatch(1);
+                var googleResult = executor.submit(() -> {
+                    start.await();
+                    return subscriptionService.upsertAll(List.of(google)).get(0);
+                });
+                var appleResult = executor.submit(() -> {
+                    start.await();
+                    return subscriptionService.upsertAll(List.of(apple)).get(0);
+                });
+                start.countDown();
+
+                var results = List.of(googleResult.get(), appleResult.get());
+                var stored = subscriptionDao.findByUserId(userId);
+                assertThat(stored).hasSize(1);
+                assertThat(results).filteredOn(result -> !result.hasErrors())
+                        .singleElement()
+                        .extracting(UpsertResult::getSubscription)
+                        .isEqualTo(stored.get(0));
+                assertThat(results).filteredOn(UpsertResult::hasErrors)
+                        .singleElement()
+                        .satisfies(result -> assertThat(result.getErrors()).extracting(Error::getCode).containsExactly(104));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private CreateSubscriptionDto getSubscriptionDto(Integer userId, String name) {
+        return getSubscriptionDto(userId, name, Provider.GOOGLE);
+    }
+
+    private CreateSubscriptionDto getSubscriptionDto(Integer userId, String name, Provider provider) {
+        var now = ZonedDateTime.now(clock);
+        return CreateSubscriptionDto.builder()
+                .userId(userId)
+                .name(name)
+                .expirationDate(now.toInstant().plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS))
+                .provider(provider.toString())
+                .build();
+    }
 
     private CreateSubscriptionDto getSubscriptionDto() {
         var now = ZonedDateTime.now(clock);
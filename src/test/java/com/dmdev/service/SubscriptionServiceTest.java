@@ -1,6 +1,6 @@
 package com.dmdev.service;
 
-import com.dmdev.dao.SubscriptionDao;
+import com.dmdev.dao.SubscriptionRepository;
 import com.dmdev.dto.CreateSubscriptionDto;
 import com.dmdev.entity.Provider;
 import com.dmdev.entity.Status;
@@ -24,11 +24,14 @@ import java.time.Clock;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.timeout;
@@ -44,7 +47,7 @@ class SubscriptionServiceTest {
     @Mock
     private CreateSubscriptionMapper subscriptionMapper;
     @Mock
-    private SubscriptionDao subscriptionDao;
+    private SubscriptionRepository subscriptionDao;
     @Mock
     private Clock clock;
     @Mock
@@ -68,15 +71,36 @@ class SubscriptionServiceTest {
                 .provider("APPLE")
                 .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS))
                 .build();
-        doReturn(new ValidationResult()).when(subscriptionValidator).validate(subscriptionDto);
-        doReturn(new ArrayList<Subscription>()).when(subscriptionDao).findByUserId(subscriptionDto.getUserId());
+        doReturn(ValidationResult.valid()).when(subscriptionValidator).validate(eq(subscriptionDto), any());
         doReturn(subscription).when(subscriptionMapper).map(subscriptionDto);
-        doReturn(subscription).when(subscriptionDao).upsert(subscription);
+        doReturn(Optional.of(subscription)).when(subscriptionDao).upsertByUserIdAndName(subscription);
 
         var actualResult = subscriptionService.upsert(subscriptionDto);
 
         assertThat(actualResult).isEqualTo(subscription);
-        verify(subscriptionDao).upsert(subscription);
+        verify(subscriptionDao).upsertByUserIdAndName(subscription);
+    }
+
+    @Test
+    void upsertThrowExceptionIfSubscriptionBelongsToAnotherProvider() {
+        var subscription = Subscription.builder()
+                .userId(666)
+                .name("subscription1")
+                .provider(Provider.APPLE)
+                .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS))
+                .status(Status.ACTIVE)
+                .build();
+        var subscriptionDto = CreateSubscriptionDto.builder()
+                .userId(666)
+                .name("subscription1")
+                .provider("APPLE")
+                .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS))
+                .build();
+        doReturn(ValidationResult.valid()).when(subscriptionValidator).validate(eq(subscriptionDto), any());
+        doReturn(subscription).when(subscriptionMapper).map(subscriptionDto);
+        doReturn(Optional.empty()).when(subscriptionDao).upsertByUserIdAndName(subscription);
+
+        assertThrows(SubscriptionException.class, () -> subscriptionService.upsert(subscriptionDto));
     }
 
     @Test
@@ -89,10 +113,11 @@ class SubscriptionServiceTest {
                 .provider("APPLE")
                 .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS))
                 .build();
-        doReturn(validationResult).when(subscriptionValidator).validate(subscriptionDto);
+        doReturn(validationResult).when(subscriptionValidator).validate(eq(subscriptionDto), any());
 
         assertThrows(ValidationException.class, () -> subscriptionService.upsert(subscriptionDto));
         verify(subscriptionDao, times(0)).update(any());
+        verify(subscriptionDao, times(0)).upsertByUserIdAndName(any());
     }
 
     @Test
@@ -105,13 +130,13 @@ class SubscriptionServiceTest {
                 .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS))
                 .status(Status.ACTIVE)
                 .build();
-        doReturn(Optional.of(subscription)).when(subscriptionDao).findById(subscription.getId());
+        doReturn(true).when(subscriptionDao).cancel(subscription.getId());
 
         subscriptionService.cancel(subscription.getId());
 
-        assertThat(subscription.getStatus()).isEqualTo(Status.CANCELED);
-        verify(subscriptionDao).findById(subscription.getId());
-        verify(subscriptionDao).update(subscription);
+        verify(subscriptionDao).cancel(subscription.getId());
+        verify(subscriptionDao, times(0)).findById(any());
+        verify(subscriptionDao, times(0)).update(any());
     }
     @Test
     void cancelThrowExceptionIfSubscriptionIdDoesNotExist() {
@@ -124,12 +149,31 @@ class SubscriptionServiceTest {
                 .status(Status.ACTIVE)
                 .build();
 
-        doThrow(IllegalArgumentException.class).when(subscriptionDao).findById(subscription.getId());
+        doReturn(false).when(subscriptionDao).cancel(subscription.getId());
+        doReturn(Optional.empty()).when(subscriptionDao).findById(subscription.getId());
 
         assertThrows(IllegalArgumentException.class, () -> subscriptionService.cancel(subscription.getId()));
         verify(subscriptionDao, times(0)).update(any());
     }
 
+    @Test
+    void cancelThrowExceptionIfSubscriptionIsNotActive() {
+        var subscription = Subscription.builder()
+                .id(555)
+                .userId(666)
+                .name("subscription1")
+                .provider(Provider.APPLE)
+                .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS))
+                .status(Status.CANCELED)
+                .build();
+
+        doReturn(false).when(subscriptionDao).cancel(subscription.getId());
+        doReturn(Optional.of(subscription)).when(subscriptionDao).findById(subscription.getId());
+
+        assertThrows(SubscriptionException.class, () -> subscriptionService.cancel(subscription.getId()));
+        verify(subscriptionDao, times(0)).update(any());
+    }
+
 
     @Test
     void expire() {
@@ -141,13 +185,28 @@ class SubscriptionServiceTest {
                 .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS))
                 .status(Status.ACTIVE)
                 .build();
-        doReturn(Optional.of(subscription)).when(subscriptionDao).findById(subscription.getId());
+        var now = Instant.now();
+        doReturn(now).when(clock).instant();
+        doReturn(true).when(subscriptionDao).expire(subscription.getId(), now);
 
         subscriptionService.expire(subscription.getId());
 
-        assertThat(subscription.getStatus()).isEqualTo(Status.EXPIRED);
-        verify(subscriptionDao).findById(subscription.getId());
-        verify(subscriptionDao).update(subscription);
+        verify(subscriptionDao).expire(subscription.getId(), now);
+        verify(subscriptionDao, times(0)).findById(any());
+        verify(subscriptionDao, times(0)).update(any());
+    }
+
+    @Test
+    void findEntitledUsersShouldCheckAtClockInstant() {
+        var now = Instant.now();
+        var entitled = new BitSet();
+        entitled.set(1);
+        doReturn(now).when(clock).instant();
+        doReturn(entitled).when(subscriptionDao).findEntitledUsers(List.of(10, 11), "subscription1", Provider.APPLE, now);
+
+        var actualResult = subscriptionService.findEntitledUsers(List.of(10, 11), "subscription1", Provider.APPLE);
+
+        assertThat(actualResult).isEqualTo(entitled);
     }
 
     @Test
@@ -161,7 +220,8 @@ class SubscriptionServiceTest {
                 .status(Status.ACTIVE)
                 .build();
 
-        doThrow(IllegalArgumentException.class).when(subscriptionDao).findById(subscription.getId());
+        doReturn(false).when(subscriptionDao).expire(eq(subscription.getId()), any());
+        doReturn(Optional.empty()).when(subscriptionDao).findById(subscription.getId());
 
         assertThrows(IllegalArgumentException.class, () -> subscriptionService.expire(subscription.getId()));
         verify(subscriptionDao, times(0)).update(any());
@@ -177,6 +237,7 @@ class SubscriptionServiceTest {
                 .status(Status.EXPIRED)
                 .build();
 
+        doReturn(false).when(subscriptionDao).expire(eq(subscription.getId()), any());
         doReturn(Optional.of(subscription)).when(subscriptionDao).findById(subscription.getId());
 
         assertThrows(SubscriptionException.class, () -> subscriptionService.expire(subscription.getId()));
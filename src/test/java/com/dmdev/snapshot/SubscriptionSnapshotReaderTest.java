@@ -0,0 +1,128 @@
+package com.dmdev.snapshot;
+
+import com.dmdev.dao.InMemorySubscriptionDao;
+import com.dmdev.entity.Provider;
+import com.dmdev.entity.Status;
+import com.dmdev.entity.Subscription;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SubscriptionSnapshotReaderTest {
+
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    private final InMemorySubscriptionDao subscriptionDao = new InMemorySubscriptionDao();
+    private final SubscriptionSnapshotExporter exporter = new SubscriptionSnapshotExporter(subscriptionDao);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void hasActiveShouldMatchUserNameProviderStatusAndExpiration() {
+        subscriptionDao.insert(getSubscription(10, "premium", Provider.APPLE, Status.ACTIVE, NOW));
+        subscriptionDao.insert(getSubscription(10, "подписка", Provider.GOOGLE, Status.ACTIVE, NOW.plusSeconds(60)));
+        subscriptionDao.insert(getSubscription(-5, "premium", Provider.APPLE, Status.ACTIVE, NOW.plusSeconds(60)));
+        subscriptionDao.insert(getSubscription(11, "premium", Provider.APPLE, Status.CANCELED, NOW.plusSeconds(60)));
+        subscriptionDao.insert(getSubscription(12, "premium", Provider.APPLE, Status.ACTIVE, NOW.minusSeconds(1)));
+        var path = directory.resolve("subscriptions.snapshot");
+
+        assertThat(exporter.export(path)).isEqualTo(5);
+        var reader = SubscriptionSnapshotReader.open(path);
+
+        assertThat(reader.size()).isEqualTo(5);
+        assertThat(reader.hasActive(10, "premium", Provider.APPLE, NOW.minusNanos(1))).isTrue();
+        assertThat(reader.hasActive(10, "premium", Provider.APPLE, NOW)).isFalse();
+        assertThat(reader.hasActive(10, "premium", Provider.GOOGLE, NOW.minusNanos(1))).isFalse();
+        assertThat(reader.hasActive(10, "подписка", Provider.GOOGLE, NOW)).isTrue();
+        assertThat(reader.hasActive(10, "premiu", Provider.APPLE, NOW.minusNanos(1))).isFalse();
+        assertThat(reader.hasActive(-5, "premium", Provider.APPLE, NOW)).isTrue();
+        assertThat(reader.hasActive(11, "premium", Provider.APPLE, NOW)).isFalse();
+        assertThat(reader.hasActive(12, "premium", Provider.APPLE, NOW)).isFalse();
+        assertThat(reader.hasActive(13, "premium", Provider.APPLE, NOW)).isFalse();
+    }
+
+    @Test
+    void hasActiveShouldAgreeWithDaoAtExpirationBoundary() {
+        var expirationDate = NOW.plusNanos(500_000_000);
+        subscriptionDao.insert(getSubscription(10, "premium", Provider.APPLE, Status.ACTIVE, expirationDate));
+        var path = directory.resolve("subscriptions.snapshot");
+        exporter.export(path);
+        var reader = SubscriptionSnapshotReader.open(path);
+
+        for (var now : List.of(NOW, expirationDate.minusNanos(1), expirationDate, expirationDate.plusNanos(1), NOW.plusSeconds(1))) {
+            assertThat(reader.hasActive(10, "premium", Provider.APPLE, now))
+                    .as("at %s", now)
+                    .isEqualTo(subscriptionDao.findEntitledUsers(List.of(10), "premium", Provider.APPLE, now).get(0));
+        }
+        assertThat(reader.hasActive(10, "premium", Provider.APPLE, expirationDate.minusNanos(1))).isTrue();
+        assertThat(reader.hasActive(10, "premium", Provider.APPLE, expirationDate)).isFalse();
+    }
+
+    @Test
+    void hasActiveShouldFindEveryUserOfLargeSnapshot() {
+        for (int userId = 0; userId < 3_000; userId += 3) {
+            subscriptionDao.insert(getSubscription(userId, "subscription" + userId % 7, Provider.APPLE, Status.ACTIVE, NOW.plusSeconds(60)));
+            subscriptionDao.insert(getSubscription(userId, "other", Provider.GOOGLE, Status.ACTIVE, NOW.plusSeconds(60)));
+        }
+        var path = directory.resolve("subscriptions.snapshot");
+        exporter.export(path);
+        var reader = SubscriptionSnapshotReader.open(path);
+
+        for (int userId = -1; userId < 3_001; userId++) {
+            assertThat(reader.hasActive(userId, "subscription" + userId % 7, Provider.APPLE, NOW))
+                    .as("user %d", userId).isEqualTo(userId >= 0 && userId < 3_000 && userId % 3 == 0);
+            assertThat(reader.hasActive(userId, "other", Provider.APPLE, NOW)).isFalse();
+        }
+    }
+
+    @Test
+    void swapShouldServeFreshExportOfSamePath() {
+        var subscription = subscriptionDao.insert(getSubscription(10, "premium", Provider.APPLE, Status.ACTIVE, NOW.plusSeconds(60)));
+        var path = directory.resolve("subscriptions.snapshot");
+        exporter.export(path);
+        var reader = SubscriptionSnapshotReader.open(path);
+
+        subscriptionDao.cancel(subscription.getId());
+        subscriptionDao.insert(getSubscription(11, "premium", Provider.APPLE, Status.ACTIVE, NOW.plusSeconds(60)));
+        exporter.export(path);
+
+        assertThat(reader.hasActive(10, "premium", Provider.APPLE, NOW)).isTrue();
+        reader.swap(path);
+        assertThat(reader.hasActive(10, "premium", Provider.APPLE, NOW)).isFalse();
+        assertThat(reader.hasActive(11, "premium", Provider.APPLE, NOW)).isTrue();
+        assertThat(reader.size()).isEqualTo(2);
+        assertThat(directory).isDirectoryNotContaining("glob:**.tmp");
+    }
+
+    @Test
+    void openShouldReadEmptySnapshotAndRejectOtherFiles() throws Exception {
+        var path = directory.resolve("subscriptions.snapshot");
+        exporter.export(path);
+        var other = Files.writeString(directory.resolve("other"), "not a snapshot, but long enough for a header");
+
+        assertThat(SubscriptionSnapshotReader.open(path).hasActive(10, "premium", Provider.APPLE, NOW)).isFalse();
+        assertThrows(IllegalStateException.class, () -> SubscriptionSnapshotReader.open(other));
+        var reader = SubscriptionSnapshotReader.open(path);
+        assertThrows(IllegalStateException.class, () -> reader.swap(other));
+        assertThat(reader.size()).isZero();
+    }
+
+    private Subscription getSubscription(int userId, String name, Provider provider, Status status, Instant expirationDate) {
+        return Subscription.builder()
+                .userId(userId)
+                .name(name)
+                .provider(provider)
+                .expirationDate(expirationDate)
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.dmdev.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConnectionManagerTest {
+
+    private static final String URL_KEY = "db.url";
+    private static final String REPLICA_URLS_KEY = "db.replica.urls";
+    private static final String PRIMARY_URL = "jdbc:h2:mem:manager-primary";
+
+    @AfterEach
+    void restoreProperties() {
+        ConnectionManager.closePool();
+        System.clearProperty(URL_KEY);
+        System.clearProperty(REPLICA_URLS_KEY);
+    }
+
+    @Test
+    void getShouldSucceedOnceDatabaseBecomesAvailable() throws SQLException {
+        // the pool can only connect while the database exists
+        System.setProperty(URL_KEY, PRIMARY_URL + ";IFEXISTS=TRUE");
+
+        assertThrows(SQLException.class, ConnectionManager::get);
+        assertThrows(SQLException.class, ConnectionManager::get);
+
+        try (var ignored = DriverManager.getConnection(PRIMARY_URL, "sa", "");
+             var connection = ConnectionManager.get()) {
+            assertThat(connection.getMetaData().getURL()).isEqualTo(PRIMARY_URL);
+        }
+    }
+
+    @Test
+    void unreachableReplicaShouldNotFailStart() throws SQLException {
+        System.setProperty(URL_KEY, PRIMARY_URL);
+        System.setProperty(REPLICA_URLS_KEY, "jdbc:h2:mem:manager-missing;IFEXISTS=TRUE");
+
+        try (var connection = ConnectionManager.getForRead()) {
+            assertThat(connection.getMetaData().getURL()).isEqualTo(PRIMARY_URL);
+        }
+        try (var connection = ConnectionManager.get()) {
+            assertThat(connection.getMetaData().getURL()).isEqualTo(PRIMARY_URL);
+        }
+    }
+}
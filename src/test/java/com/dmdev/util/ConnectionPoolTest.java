@@ -0,0 +1,298 @@
+package com.dmdev.util;
+
+import com.dmdev.metrics.InMemoryMetricsRegistry;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.jdbc.JdbcPreparedStatement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @AfterEach
+    void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void closeShouldReturnConnectionToPool() throws SQLException {
+        pool = createPool(1, 2, Duration.ofMinutes(1));
+
+        JdbcConnection physical;
+        try (var connection = pool.borrow()) {
+            physical = connection.unwrap(JdbcConnection.class);
+        }
+
+        try (var connection = pool.borrow()) {
+            assertThat(connection.unwrap(JdbcConnection.class)).isSameAs(physical);
+        }
+        assertThat(pool.getOpenCount()).isEqualTo(1);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    void borrowShouldTimeOutIfPoolIsExhausted() throws SQLException {
+        pool = createPool(0, 1, Duration.ofMinutes(1));
+
+        try (var ignored = pool.borrow()) {
+            assertThrows(SQLTimeoutException.class, () -> pool.borrow());
+        }
+    }
+
+    @Test
+    void tryBorrowShouldReturnNullIfPoolStaysExhausted() throws SQLException {
+        pool = createPool(0, 1, Duration.ofMinutes(1));
+
+        try (var ignored = pool.borrow()) {
+            assertThat(pool.tryBorrow(Duration.ZERO)).isNull();
+        }
+        try (var connection = pool.tryBorrow(Duration.ZERO)) {
+            assertThat(connection).isNotNull();
+        }
+    }
+
+    @Test
+    void borrowShouldReplaceInvalidConnection() throws SQLException {
+        pool = createPool(1, 1, Duration.ofMinutes(1));
+        JdbcConnection physical;
+        try (var connection = pool.borrow()) {
+            physical = connection.unwrap(JdbcConnection.class);
+        }
+        physical.close();
+
+        try (var connection = pool.borrow()) {
+            assertThat(connection.unwrap(JdbcConnection.class)).isNotSameAs(physical);
+            assertThat(connection.isValid(1)).isTrue();
+        }
+        assertThat(pool.getOpenCount()).isEqualTo(1);
+    }
+
+    @Test
+    void closedConnectionShouldNotBeUsable() throws SQLException {
+        pool = createPool(1, 1, Duration.ofMinutes(1));
+        var connection = pool.borrow();
+
+        connection.close();
+        connection.close();
+
+        assertThat(connection.isClosed()).isTrue();
+        assertThrows(SQLException.class, connection::createStatement);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    void returnedConnectionShouldBeResetToAutoCommit() throws SQLException {
+        pool = createPool(1, 1, Duration.ofMinutes(1));
+        try (var connection = pool.borrow()) {
+            connection.setAutoCommit(false);
+        }
+
+        try (var connection = pool.borrow()) {
+            assertThat(connection.getAutoCommit()).isTrue();
+        }
+    }
+
+    @Test
+    void returnedConnectionShouldBeResetToDefaultIsolation() throws SQLException {
+        pool = createPool(1, 1, Duration.ofMinutes(1));
+        int defaultIsolation;
+        try (var connection = pool.borrow()) {
+            defaultIsolation = connection.getTransactionIsolation();
+            connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        }
+
+        try (var connection = pool.borrow()) {
+            assertThat(connection.getTransactionIsolation()).isEqualTo(defaultIsolation);
+        }
+    }
+
+    @Test
+    void idleConnectionsShouldBeEvictedDownToMinSize() throws Exception {
+        pool = createPool(1, 3, Duration.ofMillis(50));
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+        Connection third = pool.borrow();
+        first.close();
+        second.close();
+        third.close();
+        assertThat(pool.getOpenCount()).isEqualTo(3);
+
+        Thread.sleep(300);
+
+        assertThat(pool.getOpenCount()).isEqualTo(1);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    void droppedConnectionsShouldBeReplacedUpToMinSize() throws Exception {
+        pool = createPool(2, 3, Duration.ofMillis(50));
+        var first = pool.borrow();
+        var second = pool.borrow();
+        first.unwrap(JdbcConnection.class).close();
+        second.unwrap(JdbcConnection.class).close();
+        first.close();
+        second.close();
+        assertThat(pool.getOpenCount()).isZero();
+
+        Thread.sleep(300);
+
+        assertThat(pool.getOpenCount()).isEqualTo(2);
+        assertThat(pool.getIdleCount()).isEqualTo(2);
+    }
+
+    @Test
+    void failedWarmUpShouldCloseOpenedConnections() {
+        // the init script only succeeds on the first connection, the second one fails to open
+        var url = "jdbc:h2:mem:warmup";
+        assertThrows(SQLException.class, () -> ConnectionPool.builder()
+                .url(url + ";INIT=CREATE TABLE warmup(id INT)")
+                .user("sa")
+                .password("")
+                .minSize(2)
+                .maxSize(2)
+                .borrowTimeout(Duration.ofMillis(100))
+                .idleTimeout(Duration.ofMinutes(1))
+                .validationTimeoutSeconds(1)
+                .build());
+
+        // an in-memory database is dropped once its last connection is closed
+        assertThrows(SQLException.class, () -> DriverManager.getConnection(url + ";IFEXISTS=TRUE", "sa", ""));
+    }
+
+    @Test
+    void closedStatementShouldBeReused() throws SQLException {
+        pool = createPool(1, 1, Duration.ofMinutes(1));
+        JdbcPreparedStatement physical;
+        try (var connection = pool.borrow();
+             var statement = connection.prepareStatement("SELECT 1")) {
+            physical = statement.unwrap(JdbcPreparedStatement.class);
+        }
+
+        try (var connection = pool.borrow();
+             var statement = connection.prepareStatement("SELECT 1")) {
+            assertThat(statement.unwrap(JdbcPreparedStatement.class)).isSameAs(physical);
+            assertThat(statement.getConnection()).isSameAs(connection);
+        }
+        var stats = pool.getStatementCacheStats();
+        assertThat(stats.getHits()).isEqualTo(1);
+        assertThat(stats.getMisses()).isEqualTo(1);
+        assertThat(stats.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    void openStatementShouldNotBeSharedWithSameSql() throws SQLException {
+        pool = createPool(1, 1, Duration.ofMinutes(1));
+        try (var connection = pool.borrow();
+             var first = connection.prepareStatement("SELECT 1");
+             var second = connection.prepareStatement("SELECT 1")) {
+            assertThat(first.unwrap(JdbcPreparedStatement.class)).isNotSameAs(second.unwrap(JdbcPreparedStatement.class));
+        }
+        assertThat(pool.getStatementCacheStats().getSize()).isEqualTo(1);
+    }
+
+    @Test
+    void closedStatementShouldNotBeUsable() throws SQLException {
+        pool = createPool(1, 1, Duration.ofMinutes(1));
+        try (var connection = pool.borrow()) {
+            var statement = connection.prepareStatement("SELECT ?");
+            statement.setInt(1, 1);
+            statement.close();
+
+            assertThat(statement.isClosed()).isTrue();
+            assertThrows(SQLException.class, statement::executeQuery);
+        }
+    }
+
+    @Test
+    void statementCacheShouldEvictLeastRecentlyUsedStatement() throws SQLException {
+        pool = createPool(1, 1, Duration.ofMinutes(1), 2);
+        try (var connection = pool.borrow()) {
+            for (String sql : new String[]{"SELECT 1", "SELECT 2", "SELECT 1", "SELECT 3", "SELECT 1"}) {
+                connection.prepareStatement(sql).close();
+            }
+        }
+
+        var stats = pool.getStatementCacheStats();
+        assertThat(stats.getHits()).isEqualTo(2);
+        assertThat(stats.getEvictions()).isEqualTo(1);
+        assertThat(stats.getSize()).isEqualTo(2);
+    }
+
+    @Test
+    void statementLeftOpenShouldBeReleasedWithConnection() throws SQLException {
+        pool = createPool(1, 1, Duration.ofMinutes(1));
+        PreparedStatement leaked;
+        JdbcPreparedStatement physical;
+        try (var connection = pool.borrow()) {
+            leaked = connection.prepareStatement("SELECT 1");
+            physical = leaked.unwrap(JdbcPreparedStatement.class);
+        }
+
+        try (var connection = pool.borrow();
+             var statement = connection.prepareStatement("SELECT 1")) {
+            assertThat(leaked.isClosed()).isTrue();
+            assertThat(statement.unwrap(JdbcPreparedStatement.class)).isSameAs(physical);
+        }
+    }
+
+    @Test
+    void acquisitionShouldBeTimed() throws SQLException {
+        var registry = new InMemoryMetricsRegistry();
+        pool = ConnectionPool.builder()
+                .url("jdbc:h2:mem:pool")
+                .user("sa")
+                .password("")
+                .minSize(0)
+                .maxSize(1)
+                .borrowTimeout(Duration.ofMillis(100))
+                .idleTimeout(Duration.ofMinutes(1))
+                .validationTimeoutSeconds(1)
+                .metricsRegistry(registry)
+                .build();
+
+        try (var ignored = pool.borrow()) {
+            assertThrows(SQLTimeoutException.class, () -> pool.borrow());
+        }
+
+        var actualResult = registry.snapshot().get("connection.acquire");
+        assertThat(actualResult.getCount()).isEqualTo(2);
+        assertThat(actualResult.getErrorCount()).isEqualTo(1);
+        assertThat(actualResult.getMaxNanos()).isGreaterThanOrEqualTo(Duration.ofMillis(100).toNanos());
+    }
+
+    @Test
+    void shouldThrowExceptionIfSizeIsInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> createPool(3, 2, Duration.ofMinutes(1)));
+    }
+
+    private ConnectionPool createPool(int minSize, int maxSize, Duration idleTimeout) {
+        return createPool(minSize, maxSize, idleTimeout, 10);
+    }
+
+    private ConnectionPool createPool(int minSize, int maxSize, Duration idleTimeout, int statementCacheSize) {
+        return ConnectionPool.builder()
+                .url("jdbc:h2:mem:pool")
+                .user("sa")
+                .password("")
+                .minSize(minSize)
+                .maxSize(maxSize)
+                .borrowTimeout(Duration.ofMillis(100))
+                .idleTimeout(idleTimeout)
+                .validationTimeoutSeconds(1)
+                .statementCacheSize(statementCacheSize)
+                .build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.dmdev.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LruCacheTest {
+
+    @Test
+    void segmentedCacheShouldStayWithinMaxSize() {
+        var cache = new LruCache<Integer, Integer>(1000, Duration.ofMinutes(1));
+
+        for (int key = 0; key < 10_000; key++) {
+            cache.put(key, key);
+        }
+
+        var stats = cache.stats();
+        assertThat(stats.getSize()).isBetween(1, 1000);
+        assertThat(stats.getEvictions()).isEqualTo(10_000 - stats.getSize());
+        assertThat(cache.get(9_999)).isEqualTo(9_999);
+    }
+
+    @Test
+    void concurrentReadersShouldCountEveryHitAndMiss() {
+        var cache = new LruCache<Integer, Integer>(1000, Duration.ofMinutes(1));
+        IntStream.range(0, 500).forEach(key -> cache.put(key, key));
+
+        var readers = IntStream.range(0, 4)
+                .mapToObj(reader -> CompletableFuture.runAsync(() -> {
+                    for (int key = 0; key < 1000; key++) {
+                        cache.get(key);
+                    }
+                }))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(readers).join();
+
+        assertThat(cache.stats().getHits()).isEqualTo(4 * 500);
+        assertThat(cache.stats().getMisses()).isEqualTo(4 * 500);
+    }
+}
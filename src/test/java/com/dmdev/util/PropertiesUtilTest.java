@@ -29,6 +29,13 @@ class PropertiesUtilTest {
         );
     }
 
-
-
+    @Test
+    void systemPropertyShouldOverrideFileValue() {
+        System.setProperty("db.user", "override");
+        try {
+            assertThat(PropertiesUtil.get("db.user")).isEqualTo("override");
+        } finally {
+            System.clearProperty("db.user");
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.dmdev.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRouterTest {
+
+    private static final String PRIMARY_URL = "jdbc:h2:mem:primary";
+    private static final String REPLICA1_URL = "jdbc:h2:mem:replica1";
+    private static final String REPLICA2_URL = "jdbc:h2:mem:replica2";
+
+    private final ConnectionPool primary = createPool(PRIMARY_URL);
+    private final ConnectionPool replica1 = createPool(REPLICA1_URL);
+    private final ConnectionPool replica2 = createPool(REPLICA2_URL);
+
+    @AfterEach
+    void closePools() {
+        primary.close();
+        replica1.close();
+        replica2.close();
+    }
+
+    @Test
+    void readsShouldGoToReplicasRoundRobin() throws SQLException {
+        var router = createRouter(List.of(replica1, replica2), Duration.ofMinutes(1));
+
+        assertThat(List.of(readUrl(router), readUrl(router), readUrl(router), readUrl(router)))
+                .containsExactly(REPLICA1_URL, REPLICA2_URL, REPLICA1_URL, REPLICA2_URL);
+    }
+
+    @Test
+    void writesShouldGoToPrimary() throws SQLException {
+        var router = createRouter(List.of(replica1, replica2), Duration.ofMinutes(1));
+
+        try (var connection = router.getPrimary()) {
+            assertThat(urlOf(connection)).isEqualTo(PRIMARY_URL);
+        }
+    }
+
+    @Test
+    void readsShouldStickToPrimaryAfterWriteOfSameThread() throws Exception {
+        var router = createRouter(List.of(replica1, replica2), Duration.ofMinutes(1));
+        router.getPrimary().close();
+
+        assertThat(readUrl(router)).isEqualTo(PRIMARY_URL);
+        assertThat(CompletableFuture.supplyAsync(() -> readUrlUnchecked(router)).get()).isEqualTo(REPLICA1_URL);
+    }
+
+    @Test
+    void readsShouldGoBackToReplicasAfterStickinessPassed() throws Exception {
+        var router = createRouter(List.of(replica1, replica2), Duration.ofMillis(50));
+        router.getPrimary().close();
+
+        Thread.sleep(100);
+        assertThat(readUrl(router)).isEqualTo(REPLICA1_URL);
+    }
+
+    @Test
+    void unavailableReplicaShouldBeSkipped() throws SQLException {
+        var router = createRouter(List.of(replica1, replica2), Duration.ofMinutes(1));
+        replica1.close();
+
+        assertThat(List.of(readUrl(router), readUrl(router))).containsExactly(REPLICA2_URL, REPLICA2_URL);
+
+        replica2.close();
+        assertThat(readUrl(router)).isEqualTo(PRIMARY_URL);
+    }
+
+    @Test
+    void readsShouldGoToPrimaryWithoutReplicas() throws SQLException {
+        var router = createRouter(List.of(), Duration.ofMinutes(1));
+
+        assertThat(readUrl(router)).isEqualTo(PRIMARY_URL);
+    }
+
+    @Test
+    void downReplicaShouldBeProbedAgainAfterRetryInterval() throws Exception {
+        var replica3Url = "jdbc:h2:mem:replica3";
+        // the pool can only connect while the database exists
+        try (var replica3 = createPool(replica3Url + ";IFEXISTS=TRUE", 0)) {
+            var router = new ReplicaRouter(primary, List.of(replica3), Duration.ofMinutes(1),
+                    Duration.ofMillis(10), Duration.ofMillis(100));
+
+            assertThat(readUrl(router)).isEqualTo(PRIMARY_URL);
+            // the database exists from now on, but the replica is only probed after the retry interval
+            try (var ignored = DriverManager.getConnection(replica3Url, "sa", "")) {
+                assertThat(readUrl(router)).isEqualTo(PRIMARY_URL);
+
+                Thread.sleep(150);
+                assertThat(readUrl(router)).isEqualTo(replica3Url);
+                assertThat(readUrl(router)).isEqualTo(replica3Url);
+            }
+        }
+    }
+
+    @Test
+    void saturatedReplicaShouldBeSkippedWithoutBeingMarkedDown() throws SQLException {
+        var router = createRouter(List.of(replica1, replica2), Duration.ofMinutes(1));
+        var first = replica1.borrow();
+        var second = replica1.borrow();
+
+        assertThat(List.of(readUrl(router), readUrl(router))).containsExactly(REPLICA2_URL, REPLICA2_URL);
+
+        first.close();
+        second.close();
+        assertThat(List.of(readUrl(router), readUrl(router))).containsExactly(REPLICA1_URL, REPLICA2_URL);
+    }
+
+    @Test
+    void replicaStatementCacheStatsShouldSumReplicaPools() throws SQLException {
+        var router = createRouter(List.of(replica1, replica2), Duration.ofMinutes(1));
+        for (int i = 0; i < 4; i++) {
+            try (var connection = router.getForRead()) {
+                connection.prepareStatement("SELECT 1").close();
+            }
+        }
+        try (var connection = router.getPrimary()) {
+            connection.prepareStatement("SELECT 1").close();
+        }
+
+        var stats = router.getReplicaStatementCacheStats();
+        assertThat(stats.getHits()).isEqualTo(2);
+        assertThat(stats.getMisses()).isEqualTo(2);
+        assertThat(stats.getSize()).isEqualTo(2);
+    }
+
+    private ReplicaRouter createRouter(List<ConnectionPool> replicas, Duration stickiness) {
+        return new ReplicaRouter(primary, replicas, stickiness, Duration.ofMillis(10), Duration.ofMinutes(1));
+    }
+
+    private String readUrl(ReplicaRouter router) throws SQLException {
+        try (var connection = router.getForRead()) {
+            return urlOf(connection);
+        }
+    }
+
+    private String readUrlUnchecked(ReplicaRouter router) {
+        try {
+            return readUrl(router);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String urlOf(Connection connection) throws SQLException {
+        return connection.getMetaData().getURL();
+    }
+
+    private ConnectionPool createPool(String url) {
+        return createPool(url, 1);
+    }
+
+    private ConnectionPool createPool(String url, int minSize) {
+        return ConnectionPool.builder()
+                .url(url)
+                .user("sa")
+                .password("")
+                .minSize(minSize)
+                .maxSize(2)
+                .borrowTimeout(Duration.ofMillis(100))
+                .idleTimeout(Duration.ofMinutes(1))
+                .validationTimeoutSeconds(1)
+                .statementCacheSize(10)
+                .build();
+    }
+}
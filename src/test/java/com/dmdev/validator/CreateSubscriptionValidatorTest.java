@@ -5,12 +5,18 @@ import com.dmdev.entity.Provider;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.time.Clock;
 import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 class CreateSubscriptionValidatorTest {
     private final CreateSubscriptionValidator subscriptionValidator = CreateSubscriptionValidator.getInstance();
@@ -115,4 +121,60 @@ class CreateSubscriptionValidatorTest {
         assertThat(errors).contains(100, 102);
     }
 
-}
\ No newline at end of file
+    @Test
+    void validDtoShouldGetSharedResult() {
+        var subscriptionDto = CreateSubscriptionDto.builder()
+                .userId(5)
+                .name("subscription1")
+                .provider("APPLE")
+                .expirationDate(Instant.now().plus(30, ChronoUnit.DAYS))
+                .build();
+
+        var actualResult = subscriptionValidator.validate(subscriptionDto);
+
+        assertSame(ValidationResult.valid(), actualResult);
+        assertThrows(UnsupportedOperationException.class, () -> actualResult.add(Error.of(100, "userId is invalid")));
+    }
+
+    @Test
+    void expirationDateShouldBeComparedWithClock() {
+        var now = Instant.parse("2030-01-01T00:00:00Z");
+        var validator = new CreateSubscriptionValidator(Clock.fixed(now, ZoneOffset.UTC));
+        var subscriptionDto = CreateSubscriptionDto.builder()
+                .userId(5)
+                .name("subscription1")
+                .provider("APPLE")
+                .expirationDate(now.minusSeconds(1))
+                .build();
+
+        var actualResult = validator.validate(subscriptionDto);
+
+        assertThat(actualResult.getErrors()).extracting(Error::getCode).containsExactly(103);
+        assertFalse(validator.validate(subscriptionDto, now.minusSeconds(2)).hasErrors());
+    }
+
+    @Test
+    void validateAllShouldUseOneReadingOfClock() {
+        var now = Instant.parse("2030-01-01T00:00:00Z");
+        var clock = mock(Clock.class);
+        doReturn(now).when(clock).instant();
+        var validator = new CreateSubscriptionValidator(clock);
+        var valid = CreateSubscriptionDto.builder()
+                .userId(5)
+                .name("subscription1")
+                .provider("APPLE")
+                .expirationDate(now)
+                .build();
+        var invalid = CreateSubscriptionDto.builder()
+                .userId(5)
+                .name(" ")
+                .provider("APPLE")
+                .expirationDate(now)
+                .build();
+
+        var actualResult = validator.validateAll(List.of(valid, invalid, valid));
+
+        assertThat(actualResult).extracting(ValidationResult::hasErrors).containsExactly(false, true, false);
+        verify(clock, times(1)).instant();
+    }
+}